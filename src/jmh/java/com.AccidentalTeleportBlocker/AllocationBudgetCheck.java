@@ -0,0 +1,282 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.api.MenuEntry;
+import net.runelite.api.Skill;
+import net.runelite.api.events.MenuOpened;
+import net.runelite.api.events.MenuOptionClicked;
+import net.runelite.api.events.StatChanged;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Drives the event handlers through thousands of synthetic events and checks the bytes allocated per
+ * event against a budget of nothing: menus, clicks, stat changes and the notifications of blocked clicks
+ * all run without allocating.
+ * <p>
+ * Allocations are read from {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}, minus
+ * what the measurement itself and the stub client allocate. Whether a handler allocates depends on what the
+ * JIT compiled by the time it's measured, so a scenario over its budget is warmed up and measured again
+ * before it fails, and the budgets leave room for a single small object the escape analysis of another JVM
+ * may not remove. Exits with status 1 when a budget is exceeded. Runs as part of {@code ./gradlew check}.
+ */
+public final class AllocationBudgetCheck {
+
+    private static final int WARMUP_EVENTS = 50_000;
+    private static final int MEASURED_EVENTS = 10_000;
+    private static final int ATTEMPTS = 3;
+
+    /**
+     * Bytes per event allowed on top of the budget, one boxed int or small array
+     */
+    private static final int TOLERANCE = 16;
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final long threadId = Thread.currentThread().getId();
+    private final long[] argumentArrayBytes = new long[StubClient.argumentArrays.length];
+    private long measurementBytes;
+    private long integerBytes;
+
+    /**
+     * Keeps the calibration allocations from being optimized away
+     */
+    private static Object sink;
+
+    private static final class Scenario {
+        private final String name;
+        private final long budget;
+        private final Runnable event;
+
+        private Scenario(String name, long budget, Runnable event) {
+            this.name = name;
+            this.budget = budget;
+            this.event = event;
+        }
+    }
+
+    public static void main(String[] args) {
+        if (!THREAD_MX_BEAN.isThreadAllocatedMemorySupported() || !THREAD_MX_BEAN.isThreadAllocatedMemoryEnabled()) {
+            System.out.println("Skipped, this JVM does not count allocated bytes per thread");
+            return;
+        }
+
+        AllocationBudgetCheck check = new AllocationBudgetCheck();
+        check.calibrate();
+
+        boolean passed = true;
+
+        for (Spellbook spellbook : Spellbook.values()) {
+            for (Scenario scenario : scenarios(spellbook)) {
+                passed &= check.run(spellbook, scenario);
+            }
+        }
+
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    private static List<Scenario> scenarios(Spellbook spellbook) {
+        StubConfig config = new StubConfig();
+        config.triggerSpellsEnabled = true;
+        config.triggerSpells = SyntheticSession.triggerList(SyntheticSession.ALL_SPELLS.size());
+        config.activationDelayTicks = TriggerWindowTimer.MAX_WINDOW_TICKS;
+
+        SyntheticSession idle = SyntheticSession.start(config);
+        idle.blockAllTeleports(spellbook);
+
+        SyntheticSession triggered = SyntheticSession.start(config);
+        triggered.blockAllTeleports(spellbook);
+
+        // Every blocked click sends a chat message
+        StubConfig uncoalescedConfig = new StubConfig();
+        uncoalescedConfig.triggerSpellsEnabled = true;
+        uncoalescedConfig.triggerSpells = config.triggerSpells;
+        uncoalescedConfig.activationDelayTicks = config.activationDelayTicks;
+        uncoalescedConfig.notificationCoalesceTicks = 0;
+
+        SyntheticSession uncoalesced = SyntheticSession.start(uncoalescedConfig);
+        uncoalesced.blockAllTeleports(spellbook);
+
+        // Only the teleports next to the trigger spell are blocked
+        StubConfig guardedConfig = new StubConfig();
+        guardedConfig.triggerSpellsEnabled = true;
+        guardedConfig.triggerSpells = config.triggerSpells;
+        guardedConfig.activationDelayTicks = config.activationDelayTicks;
+        guardedConfig.triggerProximityPixels = 10;
+
+        SyntheticSession guarded = SyntheticSession.start(guardedConfig);
+        guarded.blockAllTeleports(spellbook);
+
+        MenuEntry[] scene = SyntheticSession.sceneEntries();
+        MenuOpened sceneMenu = SyntheticSession.menu(scene);
+        MenuOptionClicked sceneClick = SyntheticSession.click(scene[4]);
+
+        List<MenuOpened> spellMenus = new ArrayList<>();
+        List<MenuOptionClicked> teleportClicks = new ArrayList<>();
+        List<MenuOptionClicked> spellClicks = new ArrayList<>();
+
+        for (TeleportSpell teleport : SyntheticSession.teleports(spellbook)) {
+            MenuEntry cast = SyntheticSession.castTeleport(teleport);
+            spellMenus.add(SyntheticSession.menu(scene[0], scene[4], cast));
+            teleportClicks.add(SyntheticSession.click(cast));
+        }
+
+        for (String spell : SyntheticSession.SPELLS.get(spellbook)) {
+            MenuEntry cast = SyntheticSession.castSpell(spell);
+            spellMenus.add(SyntheticSession.menu(scene[0], scene[4], cast));
+            spellClicks.add(SyntheticSession.click(cast));
+        }
+
+        // The glory rub and the portal are blocked, the ring of dueling rub and the cave entrance are not
+        MenuEntry gloryRub = SyntheticSession.itemOption("Rub", "Amulet of glory(4)", 1712, 3);
+        MenuEntry portalEnter = SyntheticSession.objectOption("Enter", "Portal", 4525, 1);
+        List<MenuOptionClicked> blockedOptionClicks = List.of(SyntheticSession.click(gloryRub), SyntheticSession.click(portalEnter));
+        List<MenuOptionClicked> optionClicks = List.of(
+                SyntheticSession.click(SyntheticSession.itemOption("Rub", "Ring of dueling(8)", 2552, 3)),
+                SyntheticSession.click(SyntheticSession.objectOption("Enter", "Cave entrance", 1759, 1)));
+
+        for (SyntheticSession session : List.of(idle, triggered)) {
+            session.blockOption(gloryRub);
+            session.blockOption(portalEnter);
+        }
+
+        StatChanged hitpointsXp = new StatChanged(Skill.HITPOINTS, 13_034_431, 99, 99);
+
+        for (SyntheticSession session : List.of(triggered, uncoalesced, guarded)) {
+            session.plugin.onMenuOptionClicked(spellClicks.get(0));
+            session.completeCast();
+        }
+
+        List<Scenario> scenarios = new ArrayList<>();
+
+        scenarios.add(new Scenario("scene menu", 0, () -> {
+            idle.client.shiftHeld = false;
+            idle.plugin.onMenuOpened(sceneMenu);
+        }));
+        scenarios.add(new Scenario("scene menu with shift", 0, () -> {
+            idle.client.shiftHeld = true;
+            idle.plugin.onMenuOpened(sceneMenu);
+        }));
+        scenarios.add(new Scenario("spell menu with shift", 0, cycle(spellMenus, menu -> {
+            idle.client.shiftHeld = true;
+            idle.client.resetMenu();
+            idle.plugin.onMenuOpened(menu);
+        })));
+        scenarios.add(new Scenario("scene click", 0, () -> idle.plugin.onMenuOptionClicked(sceneClick)));
+        scenarios.add(new Scenario("spell click", 0, cycle(spellClicks, idle.plugin::onMenuOptionClicked)));
+        scenarios.add(new Scenario("allowed teleport click", 0, cycle(teleportClicks, idle.plugin::onMenuOptionClicked)));
+        scenarios.add(new Scenario("blocked teleport click", 0, cycle(teleportClicks, triggered.plugin::onMenuOptionClicked)));
+        scenarios.add(new Scenario("uncoalesced block", 0, cycle(teleportClicks, uncoalesced.plugin::onMenuOptionClicked)));
+        scenarios.add(new Scenario("guarded teleport click", 0, cycle(teleportClicks, guarded.plugin::onMenuOptionClicked)));
+        scenarios.add(new Scenario("unblocked option click", 0, cycle(optionClicks, triggered.plugin::onMenuOptionClicked)));
+        scenarios.add(new Scenario("allowed option click", 0, cycle(blockedOptionClicks, idle.plugin::onMenuOptionClicked)));
+        scenarios.add(new Scenario("blocked option click", 0, cycle(blockedOptionClicks, triggered.plugin::onMenuOptionClicked)));
+        scenarios.add(new Scenario("trigger spell cast", 0, cycle(spellClicks, click -> {
+            triggered.plugin.onMenuOptionClicked(click);
+            triggered.completeCast();
+        })));
+        scenarios.add(new Scenario("other stat change", 0, () -> triggered.plugin.onStatChanged(hitpointsXp)));
+
+        return scenarios;
+    }
+
+    /**
+     * Passes the events to the handler one by one, starting over at the end.
+     */
+    private static <T> Runnable cycle(List<T> events, Consumer<T> handler) {
+        Object[] array = events.toArray();
+
+        return new Runnable() {
+            private int next;
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void run() {
+                next = (next + 1) % array.length;
+                handler.accept((T) array[next]);
+            }
+        };
+    }
+
+    private boolean run(Spellbook spellbook, Scenario scenario) {
+        long perEvent = 0;
+        boolean passed = false;
+
+        for (int attempt = 0; attempt < ATTEMPTS && !passed; attempt++) {
+            for (int i = 0; i < WARMUP_EVENTS; i++) {
+                scenario.event.run();
+            }
+
+            long stubBytes = stubBytes();
+            long before = allocatedBytes();
+
+            for (int i = 0; i < MEASURED_EVENTS; i++) {
+                scenario.event.run();
+            }
+
+            long allocated = allocatedBytes() - before - measurementBytes - (stubBytes() - stubBytes);
+            perEvent = Math.max(0, allocated) / MEASURED_EVENTS;
+            passed = perEvent <= scenario.budget + TOLERANCE;
+        }
+
+        System.out.printf("%-4s %-9s %-24s %6d B/event (budget %d)%n",
+                passed ? "OK" : "FAIL", spellbook, scenario.name, perEvent, scenario.budget);
+
+        return passed;
+    }
+
+    /**
+     * Measures what reading the allocation counter, a stub argument array and a boxed int cost.
+     */
+    private void calibrate() {
+        long before = allocatedBytes();
+        measurementBytes = allocatedBytes() - before;
+
+        for (int length = 0; length < argumentArrayBytes.length; length++) {
+            int arrayLength = length;
+            argumentArrayBytes[length] = bytesPerAllocation(i -> new Object[arrayLength]);
+        }
+
+        integerBytes = bytesPerAllocation(i -> Integer.valueOf(1_000 + i));
+
+        System.out.printf("Calibrated: %d B per measurement, %d B per boxed int, %d B per argument array%n",
+                measurementBytes, integerBytes, argumentArrayBytes[1]);
+    }
+
+    private long bytesPerAllocation(IntFunction<Object> allocation) {
+        for (int i = 0; i < WARMUP_EVENTS; i++) {
+            sink = allocation.apply(i);
+        }
+
+        long before = allocatedBytes();
+
+        for (int i = 0; i < MEASURED_EVENTS; i++) {
+            sink = allocation.apply(i);
+        }
+
+        return (allocatedBytes() - before - measurementBytes) / MEASURED_EVENTS;
+    }
+
+    /**
+     * Bytes allocated by the stub client so far, see {@link StubClient#counted(Object[], Object)}.
+     */
+    private long stubBytes() {
+        long bytes = StubClient.boxedInts * integerBytes;
+
+        for (int length = 0; length < argumentArrayBytes.length; length++) {
+            bytes += StubClient.argumentArrays[length] * argumentArrayBytes[length];
+        }
+
+        return bytes;
+    }
+
+    private long allocatedBytes() {
+        return THREAD_MX_BEAN.getThreadAllocatedBytes(threadId);
+    }
+}
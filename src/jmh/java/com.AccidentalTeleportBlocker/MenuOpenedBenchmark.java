@@ -0,0 +1,88 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.api.MenuEntry;
+import net.runelite.api.events.MenuOpened;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Right-click menus going through {@code onMenuOpened}: a single spell in the spellbook (with and
+ * without shift held) and a busy scene menu without any spells.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MenuOpenedBenchmark {
+
+    @Param({"STANDARD", "ANCIENT", "LUNAR", "ARCEUUS"})
+    public Spellbook spellbook;
+
+    @Param({"true", "false"})
+    public boolean shiftHeld;
+
+    private SyntheticSession session;
+    private MenuOpened[] spellMenus;
+    private MenuOpened sceneMenu;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        StubConfig config = new StubConfig();
+        config.triggerSpellsEnabled = true;
+        config.triggerSpells = SyntheticSession.triggerList(SyntheticSession.ALL_SPELLS.size());
+
+        session = SyntheticSession.start(config);
+        session.blockAllTeleports(spellbook);
+        session.client.shiftHeld = shiftHeld;
+
+        // One menu per spell in the spellbook, each with the usual entries around the spell
+        List<MenuOpened> menus = new ArrayList<>();
+
+        for (TeleportSpell teleport : SyntheticSession.teleports(spellbook)) {
+            menus.add(spellMenu(SyntheticSession.castTeleport(teleport)));
+        }
+
+        for (String spell : SyntheticSession.SPELLS.get(spellbook)) {
+            menus.add(spellMenu(SyntheticSession.castSpell(spell)));
+        }
+
+        spellMenus = menus.toArray(new MenuOpened[0]);
+        sceneMenu = SyntheticSession.menu(SyntheticSession.sceneEntries());
+    }
+
+    private static MenuOpened spellMenu(MenuEntry cast) {
+        MenuEntry[] scene = SyntheticSession.sceneEntries();
+        return SyntheticSession.menu(scene[0], scene[4], cast);
+    }
+
+    @Benchmark
+    public int spellMenu() {
+        session.client.resetMenu();
+        next = (next + 1) % spellMenus.length;
+        session.plugin.onMenuOpened(spellMenus[next]);
+        return session.client.getCreatedMenuEntryCount();
+    }
+
+    @Benchmark
+    public int sceneMenu() {
+        session.client.resetMenu();
+        session.plugin.onMenuOpened(sceneMenu);
+        return session.client.getCreatedMenuEntryCount();
+    }
+}
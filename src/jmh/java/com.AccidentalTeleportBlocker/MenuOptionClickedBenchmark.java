@@ -0,0 +1,120 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.api.Skill;
+import net.runelite.api.events.MenuOptionClicked;
+import net.runelite.api.events.StatChanged;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clicks going through {@code onMenuOptionClicked}, and a trigger spell cast being confirmed from its
+ * magic xp drop and animation at the end of the tick.
+ * <p>
+ * All teleports of the spellbook are blocked. The {@code idle} session has no trigger window open, so
+ * teleports are let through; the {@code triggered} session has a long window open, so they are blocked.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MenuOptionClickedBenchmark {
+
+    @Param({"STANDARD", "ANCIENT", "LUNAR", "ARCEUUS"})
+    public Spellbook spellbook;
+
+    @Param({"2", "32", "110"})
+    public int triggerCount;
+
+    private SyntheticSession idle;
+    private SyntheticSession triggered;
+
+    private MenuOptionClicked sceneClick;
+    private MenuOptionClicked[] teleportClicks;
+    private MenuOptionClicked triggerClick;
+    private StatChanged hitpointsXp;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        idle = start();
+        triggered = start();
+
+        sceneClick = SyntheticSession.click(SyntheticSession.sceneEntries()[4]);
+
+        List<TeleportSpell> teleports = SyntheticSession.teleports(spellbook);
+        teleportClicks = new MenuOptionClicked[teleports.size()];
+
+        for (int i = 0; i < teleportClicks.length; i++) {
+            teleportClicks[i] = SyntheticSession.click(SyntheticSession.castTeleport(teleports.get(i)));
+        }
+
+        // The last trigger in the list, the worst case for a list scan
+        String trigger = SyntheticSession.ALL_SPELLS.get((triggerCount - 1) % SyntheticSession.ALL_SPELLS.size());
+        triggerClick = SyntheticSession.click(SyntheticSession.castSpell(trigger));
+        hitpointsXp = new StatChanged(Skill.HITPOINTS, 13_034_431, 99, 99);
+
+        triggered.plugin.onMenuOptionClicked(triggerClick);
+        triggered.completeCast();
+    }
+
+    private SyntheticSession start() {
+        StubConfig config = new StubConfig();
+        config.triggerSpellsEnabled = true;
+        config.triggerSpells = SyntheticSession.triggerList(triggerCount);
+        config.activationDelayTicks = TriggerWindowTimer.MAX_WINDOW_TICKS;
+
+        SyntheticSession session = SyntheticSession.start(config);
+        session.blockAllTeleports(spellbook);
+        return session;
+    }
+
+    private MenuOptionClicked nextTeleportClick() {
+        next = (next + 1) % teleportClicks.length;
+        return teleportClicks[next];
+    }
+
+    @Benchmark
+    public void sceneClick() {
+        idle.plugin.onMenuOptionClicked(sceneClick);
+    }
+
+    @Benchmark
+    public void triggerSpellClick() {
+        idle.plugin.onMenuOptionClicked(triggerClick);
+    }
+
+    @Benchmark
+    public void teleportAllowed() {
+        idle.plugin.onMenuOptionClicked(nextTeleportClick());
+    }
+
+    @Benchmark
+    public void teleportBlocked() {
+        triggered.plugin.onMenuOptionClicked(nextTeleportClick());
+    }
+
+    @Benchmark
+    public void triggerSpellCast() {
+        triggered.plugin.onMenuOptionClicked(triggerClick);
+        triggered.completeCast();
+    }
+
+    @Benchmark
+    public void otherStatChanged() {
+        triggered.plugin.onStatChanged(hitpointsXp);
+    }
+}
@@ -0,0 +1,102 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.api.MenuEntry;
+import net.runelite.api.events.MenuOptionClicked;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Item and object clicks going through {@code onMenuOptionClicked} with a growing number of blocked
+ * options, which should not change the cost of a click.
+ * <p>
+ * The {@code idle} session has no trigger window open, so blocked options are let through; the
+ * {@code triggered} session has a long window open, so they are blocked.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OptionBlockingBenchmark {
+
+    private static final int FIRST_ITEM_ID = 1000;
+
+    @Param({"1", "50", "500"})
+    public int blockedOptions;
+
+    private SyntheticSession idle;
+    private SyntheticSession triggered;
+
+    private MenuOptionClicked[] blockedClicks;
+    private MenuOptionClicked unblockedClick;
+    private MenuOptionClicked objectClick;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        idle = start();
+        triggered = start();
+
+        blockedClicks = new MenuOptionClicked[blockedOptions];
+
+        for (int i = 0; i < blockedOptions; i++) {
+            MenuEntry rub = SyntheticSession.itemOption("Rub", "Item " + i, FIRST_ITEM_ID + i, 3);
+            idle.blockOption(rub);
+            triggered.blockOption(rub);
+            blockedClicks[i] = SyntheticSession.click(rub);
+        }
+
+        unblockedClick = SyntheticSession.click(SyntheticSession.itemOption("Wear", "Item 0", FIRST_ITEM_ID, 2));
+        objectClick = SyntheticSession.click(SyntheticSession.objectOption("Enter", "Portal", 4525, 1));
+
+        MenuOptionClicked triggerClick = SyntheticSession.click(SyntheticSession.castSpell("High Level Alchemy"));
+        triggered.plugin.onMenuOptionClicked(triggerClick);
+        triggered.completeCast();
+    }
+
+    private SyntheticSession start() {
+        StubConfig config = new StubConfig();
+        config.triggerSpellsEnabled = true;
+        config.triggerSpells = "High Level Alchemy";
+        config.activationDelayTicks = TriggerWindowTimer.MAX_WINDOW_TICKS;
+
+        return SyntheticSession.start(config);
+    }
+
+    private MenuOptionClicked nextBlockedClick() {
+        next = (next + 1) % blockedClicks.length;
+        return blockedClicks[next];
+    }
+
+    @Benchmark
+    public void unblockedItemClick() {
+        idle.plugin.onMenuOptionClicked(unblockedClick);
+    }
+
+    @Benchmark
+    public void unblockedObjectClick() {
+        idle.plugin.onMenuOptionClicked(objectClick);
+    }
+
+    @Benchmark
+    public void blockedItemAllowed() {
+        idle.plugin.onMenuOptionClicked(nextBlockedClick());
+    }
+
+    @Benchmark
+    public void blockedItemBlocked() {
+        triggered.plugin.onMenuOptionClicked(nextBlockedClick());
+    }
+}
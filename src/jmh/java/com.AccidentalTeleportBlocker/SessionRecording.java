@@ -0,0 +1,335 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.api.Item;
+import net.runelite.api.MenuAction;
+import net.runelite.api.MenuEntry;
+import net.runelite.api.Skill;
+import net.runelite.api.events.StatChanged;
+import net.runelite.api.events.VarbitChanged;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A session recorded by {@link SessionRecorder}, decoded into ready-to-send events.
+ */
+final class SessionRecording {
+
+    /**
+     * Settings and trigger spells at the start of the recording or after a config change
+     */
+    static final class Rules {
+        boolean modifierKeyEnabled;
+        AccidentalTeleportBlockerPluginConfig.ModifierKey modifierKey;
+        boolean rightClickAllowed;
+        boolean triggerSpellsEnabled;
+        int windowTicks;
+        String triggerSpells;
+        int proximityPixels;
+        int proximityTicks;
+
+        void applyTo(StubConfig config) {
+            config.modifierKeyEnabled = modifierKeyEnabled;
+            config.modifierKey = modifierKey;
+            config.rightClickAllowed = rightClickAllowed;
+            config.triggerSpellsEnabled = triggerSpellsEnabled;
+            config.activationDelayTicks = windowTicks;
+            config.triggerSpells = triggerSpells;
+            config.triggerProximityPixels = proximityPixels;
+            config.triggerProximityTicks = proximityTicks;
+        }
+    }
+
+    /**
+     * A spellbook widget as indexed by the plugin
+     */
+    static final class Slot {
+        final int child;
+        final String name;
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+
+        private Slot(int child, String name, int x, int y, int width, int height) {
+            this.child = child;
+            this.name = name;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    static final class ProfileSwitch {
+        final String name;
+        final RuleSnapshot rules;
+
+        private ProfileSwitch(String name, RuleSnapshot rules) {
+            this.name = name;
+            this.rules = rules;
+        }
+    }
+
+    static final class Event {
+        final int type;
+        final int tick;
+        final Object event;
+        final int keyState;
+        final BlockDecision decision;
+
+        private Event(int type, int tick, Object event, int keyState, BlockDecision decision) {
+            this.type = type;
+            this.tick = tick;
+            this.event = event;
+            this.keyState = keyState;
+            this.decision = decision;
+        }
+    }
+
+    final Spellbook spellbook;
+    final Rules rules;
+    final long[] blockedTeleportMasks = new long[Spellbook.values().length];
+
+    /**
+     * Keys of the blocked options, indexed by {@link OptionCategory} ordinal
+     */
+    final int[][] blockedOptions = new int[OptionCategory.values().length][];
+    final List<Event> events = new ArrayList<>();
+
+    private final List<String> strings = new ArrayList<>();
+    private final DataInputStream in;
+    private final int version;
+
+    // Recordings before version 4 have no xp or cast effects, every magic xp drop is given one more xp
+    private int legacyMagicXp;
+
+    private SessionRecording(DataInputStream in) throws IOException {
+        this.in = in;
+
+        if (in.readInt() != SessionRecorder.MAGIC) {
+            throw new IOException("Not a session recording");
+        }
+
+        version = in.readUnsignedByte();
+
+        if (version < 1 || version > SessionRecorder.VERSION) {
+            throw new IOException("Unsupported recording version " + version);
+        }
+
+        spellbook = Spellbook.fromVarbit(in.readUnsignedByte());
+        rules = readRules();
+
+        for (int i = 0; i < blockedTeleportMasks.length; i++) {
+            blockedTeleportMasks[i] = in.readLong();
+        }
+
+        // Recordings before version 5 have no worn item options, the item options were blocked in both
+        int categories = version >= 5 ? blockedOptions.length : OptionCategory.WORN.ordinal();
+
+        for (int i = 0; i < blockedOptions.length; i++) {
+            blockedOptions[i] = new int[version >= 2 && i < categories ? readVarInt() : 0];
+
+            for (int j = 0; j < blockedOptions[i].length; j++) {
+                blockedOptions[i][j] = readVarInt();
+            }
+        }
+
+        if (version < 5) {
+            blockedOptions[OptionCategory.WORN.ordinal()] = blockedOptions[OptionCategory.ITEM.ordinal()];
+        }
+    }
+
+    /**
+     * Whether the positions of the spellbook slots were recorded, from version 6. Older recordings only
+     * know the spells from the menu targets.
+     */
+    boolean hasSpellbookSlots() {
+        return version >= 6;
+    }
+
+    static SessionRecording read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            SessionRecording recording = new SessionRecording(in);
+            recording.readEvents();
+            return recording;
+        }
+    }
+
+    private void readEvents() throws IOException {
+        int tick = 0;
+
+        if (version < 4) {
+            events.add(new Event(SessionRecorder.STAT_CHANGED, tick, new StatChanged(Skill.MAGIC, 0, 0, 0), 0, null));
+        }
+
+        while (true) {
+            int type;
+
+            try {
+                type = in.readUnsignedByte();
+            } catch (EOFException e) {
+                // A recording that was not stopped properly can end anywhere, keep what was read
+                return;
+            }
+
+            try {
+                switch (type) {
+                    case SessionRecorder.TICK:
+                        events.add(new Event(type, ++tick, null, 0, null));
+                        break;
+                    case SessionRecorder.MENU_OPENED:
+                        readMenuOpened(tick);
+                        break;
+                    case SessionRecorder.CLICK:
+                        readClick(tick);
+                        break;
+                    case SessionRecorder.STAT_CHANGED:
+                        readStatChanged(tick);
+                        break;
+                    case SessionRecorder.VARBIT_CHANGED:
+                        VarbitChanged varbitChanged = new VarbitChanged();
+                        varbitChanged.setVarbitId(readVarInt());
+                        varbitChanged.setValue(readVarInt());
+                        events.add(new Event(type, tick, varbitChanged, 0, null));
+                        break;
+                    case SessionRecorder.RULES_CHANGED:
+                        events.add(new Event(type, tick, readRules(), 0, null));
+                        break;
+                    case SessionRecorder.PROFILE_SWITCHED:
+                        ProfileSwitch profileSwitch = new ProfileSwitch(readString(), ProfileCodec.decode(in.readUTF()));
+                        events.add(new Event(type, tick, profileSwitch, 0, null));
+                        break;
+                    case SessionRecorder.ANIMATION_CHANGED:
+                    case SessionRecorder.GRAPHIC_CHANGED:
+                        events.add(new Event(type, tick, in.readInt(), 0, null));
+                        break;
+                    case SessionRecorder.INVENTORY_CHANGED:
+                        readInventoryChanged(tick);
+                        break;
+                    case SessionRecorder.SPELLBOOK_SLOTS:
+                        readSpellbookSlots(tick);
+                        break;
+                    default:
+                        throw new IOException("Unknown record type " + type);
+                }
+            } catch (EOFException e) {
+                return;
+            }
+        }
+    }
+
+    private void readMenuOpened(int tick) throws IOException {
+        int keyState = in.readUnsignedByte();
+        MenuEntry[] entries = new MenuEntry[readVarInt()];
+
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = readMenuEntry();
+        }
+
+        events.add(new Event(SessionRecorder.MENU_OPENED, tick, SyntheticSession.menu(entries), keyState, null));
+    }
+
+    private void readStatChanged(int tick) throws IOException {
+        Skill skill = Skill.valueOf(readString());
+
+        if (version >= 4) {
+            events.add(new Event(SessionRecorder.STAT_CHANGED, tick, new StatChanged(skill, readVarInt(), 0, 0), 0, null));
+            return;
+        }
+
+        int xp = skill == Skill.MAGIC ? ++legacyMagicXp : 0;
+        events.add(new Event(SessionRecorder.STAT_CHANGED, tick, new StatChanged(skill, xp, 0, 0), 0, null));
+
+        if (skill == Skill.MAGIC) {
+            // Stands in for the cast animation, so the xp drop confirms the last clicked spell like it used to
+            events.add(new Event(SessionRecorder.ANIMATION_CHANGED, tick, 0, 0, null));
+        }
+    }
+
+    private void readInventoryChanged(int tick) throws IOException {
+        Item[] items = new Item[readVarInt()];
+
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new Item(readVarInt(), readVarInt());
+        }
+
+        events.add(new Event(SessionRecorder.INVENTORY_CHANGED, tick, items, 0, null));
+    }
+
+    private void readSpellbookSlots(int tick) throws IOException {
+        Slot[] slots = new Slot[readVarInt()];
+
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(readVarInt(), readString(), in.readShort(), in.readShort(), in.readShort(), in.readShort());
+        }
+
+        events.add(new Event(SessionRecorder.SPELLBOOK_SLOTS, tick, slots, 0, null));
+    }
+
+    private void readClick(int tick) throws IOException {
+        MenuEntry entry = readMenuEntry();
+        int keyState = in.readUnsignedByte();
+        BlockDecision decision = BlockDecision.values()[in.readUnsignedByte()];
+
+        events.add(new Event(SessionRecorder.CLICK, tick, SyntheticSession.click(entry), keyState, decision));
+    }
+
+    private MenuEntry readMenuEntry() throws IOException {
+        String option = readString();
+        String target = readString();
+        MenuAction action = MenuAction.of(readVarInt());
+        int identifier = version >= 2 ? in.readInt() : 0;
+        int itemId = version >= 2 ? in.readInt() : -1;
+        int param1 = in.readInt();
+
+        MenuEntry entry = StubMenuEntry.create(option, target, action, -1, param1).setIdentifier(identifier);
+        return StubMenuEntry.of(entry).setItemId(itemId);
+    }
+
+    private Rules readRules() throws IOException {
+        Rules rules = new Rules();
+        rules.modifierKeyEnabled = in.readBoolean();
+        rules.modifierKey = AccidentalTeleportBlockerPluginConfig.ModifierKey.values()[in.readUnsignedByte()];
+        rules.rightClickAllowed = in.readBoolean();
+        rules.triggerSpellsEnabled = in.readBoolean();
+        rules.windowTicks = readVarInt();
+        rules.triggerSpells = in.readUTF();
+
+        if (version >= 6) {
+            rules.proximityPixels = readVarInt();
+            rules.proximityTicks = readVarInt();
+        }
+
+        return rules;
+    }
+
+    private String readString() throws IOException {
+        int id = readVarInt();
+
+        if (id == strings.size()) {
+            strings.add(in.readUTF());
+        }
+
+        return strings.get(id);
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.api.Item;
+import net.runelite.api.MenuAction;
+import net.runelite.api.events.CommandExecuted;
+import net.runelite.api.events.GameTick;
+import net.runelite.api.events.MenuOpened;
+import net.runelite.api.events.MenuOptionClicked;
+import net.runelite.api.events.StatChanged;
+import net.runelite.api.events.VarbitChanged;
+import net.runelite.client.events.ConfigChanged;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays sessions recorded by {@link SessionRecorder} through the plugin on a {@link StubClient}, and
+ * reports the events per second, the recorded block decisions, and every click where the plugin now
+ * decides differently than it did in the recording.
+ * <p>
+ * Arguments are recording files or directories with recordings. Exits with status 1 when a decision drifted.
+ */
+public final class SessionReplay {
+
+    private static final int MAX_REPORTED_DRIFTS = 20;
+
+    private static final GameTick GAME_TICK = new GameTick();
+
+    private final Map<BlockDecision, Integer> recordedDecisions = new EnumMap<>(BlockDecision.class);
+    private final List<String> drifts = new ArrayList<>();
+    private int blockedClicks;
+
+    public static void main(String[] args) throws IOException {
+        List<File> files = new ArrayList<>();
+
+        for (String arg : args) {
+            File file = new File(arg);
+            File[] recordings = file.listFiles((dir, name) -> name.endsWith(".atbrec"));
+
+            if (recordings != null) {
+                Arrays.sort(recordings);
+                files.addAll(Arrays.asList(recordings));
+            } else {
+                files.add(file);
+            }
+        }
+
+        if (files.isEmpty()) {
+            System.err.println("Usage: SessionReplay <recording or directory>...");
+            System.exit(2);
+        }
+
+        boolean drifted = false;
+
+        for (File file : files) {
+            drifted |= new SessionReplay().replay(file);
+        }
+
+        if (drifted) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Replays a single recording and prints the report.
+     *
+     * @return whether any decision drifted
+     */
+    private boolean replay(File file) throws IOException {
+        SessionRecording recording = SessionRecording.read(file);
+
+        StubConfig config = new StubConfig();
+        recording.rules.applyTo(config);
+
+        // Recorded widget ids are the game's, the spellbook widgets are added from the recorded slots. Older
+        // recordings have none, their spells are indexed from the recorded targets instead.
+        SyntheticSession session = SyntheticSession.start(config, false);
+
+        for (Spellbook spellbook : Spellbook.values()) {
+            session.blockTeleports(spellbook, recording.blockedTeleportMasks[spellbook.ordinal()]);
+        }
+
+        for (OptionCategory category : OptionCategory.values()) {
+            for (int key : recording.blockedOptions[category.ordinal()]) {
+                session.blockOption(category, key);
+            }
+        }
+
+        session.setSpellbook(recording.spellbook);
+        session.reloadSpellbookInterface();
+
+        long start = System.nanoTime();
+
+        for (SessionRecording.Event event : recording.events) {
+            replay(session, recording, event);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        int ticks = recording.events.isEmpty() ? 0 : recording.events.get(recording.events.size() - 1).tick;
+
+        System.out.printf("%s: %d events over %d ticks in %.1f ms, %.0f events/s%n", file.getName(),
+                recording.events.size(), ticks, elapsed / 1e6, recording.events.size() * 1e9 / Math.max(1, elapsed));
+
+        for (Map.Entry<BlockDecision, Integer> decision : recordedDecisions.entrySet()) {
+            System.out.printf("  %-24s %d (%s)%n", decision.getKey(), decision.getValue(), decision.getKey().getReason());
+        }
+
+        System.out.printf("  blocked on replay: %d, drifted: %d%n", blockedClicks, drifts.size());
+        drifts.stream().limit(MAX_REPORTED_DRIFTS).forEach(drift -> System.out.println("  " + drift));
+
+        return !drifts.isEmpty();
+    }
+
+    private void replay(SyntheticSession session, SessionRecording recording, SessionRecording.Event event) {
+        StubClient client = session.client;
+        client.shiftHeld = (event.keyState & SessionRecorder.SHIFT_HELD) != 0;
+        client.ctrlHeld = (event.keyState & SessionRecorder.CTRL_HELD) != 0;
+        client.menuOpen = (event.keyState & SessionRecorder.MENU_OPEN) != 0;
+
+        switch (event.type) {
+            case SessionRecorder.TICK:
+                client.tickCount = event.tick;
+                session.plugin.onGameTick(GAME_TICK);
+                break;
+            case SessionRecorder.MENU_OPENED:
+                client.resetMenu();
+                session.plugin.onMenuOpened((MenuOpened) event.event);
+                break;
+            case SessionRecorder.CLICK:
+                replayClick(session, event);
+                break;
+            case SessionRecorder.STAT_CHANGED:
+                session.plugin.onStatChanged((StatChanged) event.event);
+                break;
+            case SessionRecorder.ANIMATION_CHANGED:
+                session.animate((Integer) event.event);
+                break;
+            case SessionRecorder.GRAPHIC_CHANGED:
+                session.graphic((Integer) event.event);
+                break;
+            case SessionRecorder.INVENTORY_CHANGED:
+                session.inventoryChanged((Item[]) event.event);
+                break;
+            case SessionRecorder.VARBIT_CHANGED:
+                VarbitChanged varbitChanged = (VarbitChanged) event.event;
+
+                if (varbitChanged.getVarbitId() == Spellbook.VARBIT) {
+                    // The slots of a new spellbook follow once the plugin indexed them in the game
+                    if (recording.hasSpellbookSlots()
+                            && Spellbook.fromVarbit(varbitChanged.getValue()) != Spellbook.fromVarbit(client.spellbookVarbit)) {
+                        client.removeWidgets();
+                    }
+
+                    client.spellbookVarbit = varbitChanged.getValue();
+                }
+
+                session.plugin.onVarbitChanged(varbitChanged);
+                break;
+            case SessionRecorder.SPELLBOOK_SLOTS:
+                client.removeWidgets();
+
+                for (SessionRecording.Slot slot : (SessionRecording.Slot[]) event.event) {
+                    client.addWidget(SpellIndex.SPELLBOOK_GROUP_ID << 16 | slot.child, slot.name, slot.x, slot.y,
+                            slot.width, slot.height);
+                }
+
+                session.reloadSpellbookInterface();
+                break;
+            case SessionRecorder.RULES_CHANGED:
+                ((SessionRecording.Rules) event.event).applyTo(session.config);
+                session.plugin.onConfigChanged(configChanged(RuleStore.CUSTOM_TRIGGER_SPELLS_KEY));
+                session.plugin.onConfigChanged(configChanged("activationDelayTicks"));
+                break;
+            case SessionRecorder.PROFILE_SWITCHED:
+                // The replay has no stored profiles, the recorded rules become the profile before switching to it
+                SessionRecording.ProfileSwitch profileSwitch = (SessionRecording.ProfileSwitch) event.event;
+                session.ruleStore.saveProfile(profileSwitch.name, profileSwitch.rules);
+                session.plugin.onCommandExecuted(new CommandExecuted("atb", ("profile " + profileSwitch.name).split(" ")));
+                break;
+        }
+    }
+
+    private void replayClick(SyntheticSession session, SessionRecording.Event event) {
+        MenuOptionClicked click = (MenuOptionClicked) event.event;
+        session.plugin.onMenuOptionClicked(click);
+
+        // The plugin's own entries run their click handler after the event
+        if (click.getMenuAction() == MenuAction.RUNELITE && !click.isConsumed()) {
+            session.clickCreatedMenuEntry(click.getMenuOption(), click.getMenuTarget());
+        }
+
+        recordedDecisions.merge(event.decision, 1, Integer::sum);
+
+        if (click.isConsumed()) {
+            blockedClicks++;
+        }
+
+        if (click.isConsumed() != event.decision.isBlocked()) {
+            drifts.add(String.format("tick %d: %s %s was %s, now %s", event.tick, click.getMenuOption(),
+                    MenuTargetNormalizer.normalize(click.getMenuTarget()), event.decision,
+                    click.isConsumed() ? "blocked" : "allowed"));
+        }
+    }
+
+    private static ConfigChanged configChanged(String key) {
+        ConfigChanged event = new ConfigChanged();
+        event.setGroup(RuleStore.CONFIG_GROUP);
+        event.setKey(key);
+        return event;
+    }
+}
@@ -0,0 +1,123 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.api.Client;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The helpers behind the handlers: menu target normalization, spell index lookups, trigger matching,
+ * and compiling the trigger list after a config change.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpellMatchingBenchmark {
+
+    @Param({"2", "32", "110"})
+    public int triggerCount;
+
+    private String triggerList;
+    private TriggerSpellList triggerSpells;
+    private RuleSnapshot rules;
+    private CastTriggerCache castTriggers;
+    private Client client;
+    private SpellIndex spellIndex;
+
+    private String[] targets;
+    private String[] spellNames;
+    private String[] teleportNames;
+    private int[] widgetIds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        triggerList = SyntheticSession.triggerList(triggerCount);
+        triggerSpells = TriggerSpellList.parse(triggerList);
+        rules = RuleSnapshot.EMPTY.withTriggerSpells(triggerSpells);
+        castTriggers = new CastTriggerCache();
+
+        // Spells and teleports of all four spellbooks, in menu form and normalized
+        List<String> names = new ArrayList<>(SyntheticSession.ALL_SPELLS);
+
+        for (TeleportSpell teleport : TeleportSpell.values()) {
+            names.add(teleport.getDisplayName());
+        }
+
+        targets = names.stream().map(SyntheticSession::colored).toArray(String[]::new);
+        spellNames = SyntheticSession.ALL_SPELLS.stream().map(MenuTargetNormalizer::normalize).toArray(String[]::new);
+        teleportNames = new String[TeleportSpell.values().length];
+
+        for (TeleportSpell teleport : TeleportSpell.values()) {
+            teleportNames[teleport.ordinal()] = teleport.getName();
+        }
+
+        StubClient stubClient = new StubClient();
+        SyntheticSession.addSpellbookWidgets(stubClient);
+        client = stubClient.getClient();
+        spellIndex = new SpellIndex();
+        spellIndex.build(client, Spellbook.STANDARD);
+        widgetIds = SyntheticSession.teleports(Spellbook.STANDARD).stream()
+                .mapToInt(teleport -> SyntheticSession.castTeleport(teleport).getParam1())
+                .toArray();
+    }
+
+    private int next(int length) {
+        next = (next + 1) % length;
+        return next;
+    }
+
+    @Benchmark
+    public String normalize() {
+        return MenuTargetNormalizer.normalize(targets[next(targets.length)]);
+    }
+
+    @Benchmark
+    public SpellIndex.Spell spellIndexLookup() {
+        return spellIndex.get(widgetIds[next(widgetIds.length)]);
+    }
+
+    @Benchmark
+    public SpellIndex.Spell spellIndexBuild() {
+        spellIndex.build(client, Spellbook.STANDARD);
+        return spellIndex.get(widgetIds[0]);
+    }
+
+    @Benchmark
+    public int matchSpell() {
+        return triggerSpells.getMatcher().match(spellNames[next(spellNames.length)]);
+    }
+
+    /**
+     * Normalizing and matching a cast target in one cache lookup, what casting a spell again costs.
+     */
+    @Benchmark
+    public int castTriggerCacheHit() {
+        return castTriggers.get(rules, targets[next(targets.length)]);
+    }
+
+    @Benchmark
+    public int matchTeleport() {
+        return triggerSpells.getMatcher().match(teleportNames[next(teleportNames.length)]);
+    }
+
+    @Benchmark
+    public TriggerSpellList parseTriggerList() {
+        return TriggerSpellList.parse(triggerList);
+    }
+}
@@ -0,0 +1,249 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.api.Client;
+import net.runelite.api.GameState;
+import net.runelite.api.KeyCode;
+import net.runelite.api.Menu;
+import net.runelite.api.MenuEntry;
+import net.runelite.api.Player;
+import net.runelite.api.widgets.Widget;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stand-in for the game client, for running the plugin without a game. Only the methods the plugin
+ * calls are backed by state, every other method returns the default value of its return type.
+ * <p>
+ * Menu entries created by the plugin come from a fixed pool that is reused after {@link #resetMenu()}.
+ * Widgets only have an id, a name and a position, and only exist once added with {@link #addWidget(int, String)}.
+ * They are laid out in a grid of spellbook slots by their child index, unless added at a given position.
+ * <p>
+ * Proxy calls allocate an argument array and box ints, which is not the plugin's doing. Those
+ * allocations are counted so allocation checks can leave them out.
+ */
+final class StubClient implements InvocationHandler {
+
+    private static final int MENU_ENTRY_POOL_SIZE = 64;
+    private static final int WIDGET_COLUMNS = 7;
+    private static final int WIDGET_SIZE = 24;
+    private static final int WIDGET_SPACING = 2;
+
+    /**
+     * Number of argument arrays allocated by stub calls, indexed by array length
+     */
+    static final long[] argumentArrays = new long[8];
+
+    /**
+     * Number of ints boxed by stub calls, outside the {@link Integer} cache
+     */
+    static long boxedInts;
+
+    boolean shiftHeld;
+    boolean ctrlHeld;
+    boolean menuOpen;
+    int spellbookVarbit;
+    int tickCount;
+    int playerAnimation = -1;
+    int playerGraphic = -1;
+
+    /**
+     * Chat messages the plugin sent, and the last one
+     */
+    int chatMessages;
+    String lastChatMessage;
+
+    private final Client client = proxy(Client.class, this);
+    private final Menu menu = proxy(Menu.class, this::invokeMenu);
+    private final Player localPlayer = proxy(Player.class, this::invokePlayer);
+    private final StubMenuEntry[] menuEntryPool = new StubMenuEntry[MENU_ENTRY_POOL_SIZE];
+    private final Map<Integer, Widget> widgets = new HashMap<>();
+    private int createdMenuEntries;
+
+    StubClient() {
+        for (int i = 0; i < menuEntryPool.length; i++) {
+            menuEntryPool[i] = StubMenuEntry.of(StubMenuEntry.create());
+        }
+    }
+
+    Client getClient() {
+        return client;
+    }
+
+    Player getLocalPlayer() {
+        return localPlayer;
+    }
+
+    /**
+     * Number of menu entries the plugin created since the last {@link #resetMenu()}.
+     */
+    int getCreatedMenuEntryCount() {
+        return createdMenuEntries;
+    }
+
+    MenuEntry getCreatedMenuEntry(int index) {
+        return menuEntryPool[index].getEntry();
+    }
+
+    void resetMenu() {
+        createdMenuEntries = 0;
+    }
+
+    void addWidget(int id, String name) {
+        int child = id & 0xFFFF;
+        addWidget(id, name, child % WIDGET_COLUMNS * (WIDGET_SIZE + WIDGET_SPACING),
+                child / WIDGET_COLUMNS * (WIDGET_SIZE + WIDGET_SPACING), WIDGET_SIZE, WIDGET_SIZE);
+    }
+
+    /**
+     * Adds a widget at the given position instead of its slot in the grid.
+     */
+    void addWidget(int id, String name, int x, int y, int width, int height) {
+        widgets.put(id, proxy(Widget.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return id;
+                case "getName":
+                    return name;
+                case "getRelativeX":
+                    return x;
+                case "getRelativeY":
+                    return y;
+                case "getWidth":
+                    return width;
+                case "getHeight":
+                    return height;
+                default:
+                    return invokeDefault(proxy, method, args);
+            }
+        }));
+    }
+
+    void removeWidgets() {
+        widgets.clear();
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        return counted(args, handle(proxy, method, args));
+    }
+
+    private Object handle(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "isKeyPressed":
+                int key = (Integer) args[0];
+                return key == KeyCode.KC_SHIFT ? shiftHeld : key == KeyCode.KC_CONTROL && ctrlHeld;
+            case "isMenuOpen":
+                return menuOpen;
+            case "getVarbitValue":
+                return (Integer) args[0] == Spellbook.VARBIT ? spellbookVarbit : 0;
+            case "getTickCount":
+                return tickCount;
+            case "getGameState":
+                return GameState.LOGGED_IN;
+            case "getMenu":
+                return menu;
+            case "getLocalPlayer":
+                return localPlayer;
+            case "getWidget":
+                return widgets.get(args.length == 1 ? (Integer) args[0] : (Integer) args[0] << 16 | (Integer) args[1]);
+            case "isClientThread":
+                return true;
+            case "addChatMessage":
+                chatMessages++;
+                lastChatMessage = (String) args[2];
+                return null;
+            default:
+                return invokeDefault(proxy, method, args);
+        }
+    }
+
+    private Object invokeMenu(Object proxy, Method method, Object[] args) {
+        if (method.getName().equals("createMenuEntry")) {
+            return counted(args, menuEntryPool[createdMenuEntries++ % menuEntryPool.length].reset());
+        }
+
+        return counted(args, invokeDefault(proxy, method, args));
+    }
+
+    private Object invokePlayer(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "getAnimation":
+                return counted(args, playerAnimation);
+            case "getGraphic":
+                return counted(args, playerGraphic);
+            default:
+                return counted(args, invokeDefault(proxy, method, args));
+        }
+    }
+
+    /**
+     * Counts the allocations made by the proxy for a call, and returns its result.
+     */
+    static Object counted(Object[] args, Object result) {
+        if (args != null) {
+            argumentArrays[Math.min(args.length, argumentArrays.length - 1)]++;
+
+            for (Object arg : args) {
+                countBoxedInt(arg);
+            }
+        }
+
+        countBoxedInt(result);
+        return result;
+    }
+
+    private static void countBoxedInt(Object value) {
+        if (value instanceof Integer) {
+            int i = (Integer) value;
+
+            if (i < -128 || i > 127) {
+                boxedInts++;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    /**
+     * Handles the {@link Object} methods of a proxy, and returns the default value for anything else.
+     */
+    static Object invokeDefault(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "Stub" + proxy.getClass().getInterfaces()[0].getSimpleName();
+        }
+
+        Class<?> type = method.getReturnType();
+
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        } else if (type == boolean.class) {
+            return false;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == float.class) {
+            return 0f;
+        } else if (type == double.class) {
+            return 0d;
+        } else if (type == char.class) {
+            return (char) 0;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == short.class) {
+            return (short) 0;
+        }
+
+        return 0;
+    }
+}
@@ -0,0 +1,104 @@
+package com.AccidentalTeleportBlocker;
+
+/**
+ * Config with settable values instead of the stored ones.
+ */
+final class StubConfig implements AccidentalTeleportBlockerPluginConfig {
+
+    boolean modifierKeyEnabled = true;
+    ModifierKey modifierKey = ModifierKey.CTRL;
+    boolean rightClickAllowed = true;
+    boolean triggerSpellsEnabled;
+    String triggerSpells = "";
+    int activationDelaySeconds = 5;
+    int activationDelayTicks;
+    int triggerProximityPixels;
+    int triggerProximityTicks;
+    boolean shareRules;
+    boolean recordSessions;
+    boolean showMetricsOverlay;
+    int metricsDumpMinutes;
+    NotificationStyle notificationStyle = NotificationStyle.CHAT;
+    int notificationCoalesceTicks = 5;
+    int suggestBlocksAfter;
+
+    @Override
+    public boolean enableModifierKey() {
+        return modifierKeyEnabled;
+    }
+
+    @Override
+    public ModifierKey modifierKey() {
+        return modifierKey;
+    }
+
+    @Override
+    public boolean allowRightClickWithoutModifier() {
+        return rightClickAllowed;
+    }
+
+    @Override
+    public boolean enableCustomTriggerSpells() {
+        return triggerSpellsEnabled;
+    }
+
+    @Override
+    public String customTriggerSpells() {
+        return triggerSpells;
+    }
+
+    @Override
+    public int activationDelaySeconds() {
+        return activationDelaySeconds;
+    }
+
+    @Override
+    public int activationDelayTicks() {
+        return activationDelayTicks;
+    }
+
+    @Override
+    public int triggerProximityPixels() {
+        return triggerProximityPixels;
+    }
+
+    @Override
+    public int triggerProximityTicks() {
+        return triggerProximityTicks;
+    }
+
+    @Override
+    public NotificationStyle notificationStyle() {
+        return notificationStyle;
+    }
+
+    @Override
+    public int notificationCoalesceTicks() {
+        return notificationCoalesceTicks;
+    }
+
+    @Override
+    public int suggestBlocksAfter() {
+        return suggestBlocksAfter;
+    }
+
+    @Override
+    public boolean shareRulesBetweenClients() {
+        return shareRules;
+    }
+
+    @Override
+    public boolean recordSessions() {
+        return recordSessions;
+    }
+
+    @Override
+    public boolean showMetricsOverlay() {
+        return showMetricsOverlay;
+    }
+
+    @Override
+    public int metricsDumpMinutes() {
+        return metricsDumpMinutes;
+    }
+}
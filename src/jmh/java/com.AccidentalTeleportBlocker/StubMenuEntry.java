@@ -0,0 +1,123 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.api.MenuAction;
+import net.runelite.api.MenuEntry;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.function.Consumer;
+
+/**
+ * Plain data {@link MenuEntry}, the setters return the entry itself like the client's entries do. The item
+ * id, which the client derives from the widget, is set through {@link #setItemId(int)}.
+ */
+final class StubMenuEntry implements InvocationHandler {
+
+    private MenuEntry entry;
+    private String option;
+    private String target;
+    private int identifier;
+    private MenuAction type;
+    private int param0;
+    private int param1;
+    private int itemId = -1;
+    private Consumer<MenuEntry> onClick;
+
+    static MenuEntry create() {
+        StubMenuEntry handler = new StubMenuEntry();
+        handler.entry = StubClient.proxy(MenuEntry.class, handler);
+        return handler.entry;
+    }
+
+    static MenuEntry create(String option, String target, MenuAction type, int param0, int param1) {
+        return create()
+                .setOption(option)
+                .setTarget(target)
+                .setType(type)
+                .setParam0(param0)
+                .setParam1(param1);
+    }
+
+    static StubMenuEntry of(MenuEntry entry) {
+        return (StubMenuEntry) Proxy.getInvocationHandler(entry);
+    }
+
+    MenuEntry setItemId(int itemId) {
+        this.itemId = itemId;
+        return entry;
+    }
+
+    MenuEntry getEntry() {
+        return entry;
+    }
+
+    MenuEntry reset() {
+        option = null;
+        target = null;
+        identifier = 0;
+        type = null;
+        param0 = 0;
+        param1 = 0;
+        itemId = -1;
+        onClick = null;
+        return entry;
+    }
+
+    /**
+     * Runs the click handler set by the plugin, like clicking the entry in the game.
+     */
+    void click() {
+        if (onClick != null) {
+            onClick.accept(entry);
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        return StubClient.counted(args, handle(proxy, method, args));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object handle(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "getOption":
+                return option;
+            case "setOption":
+                option = (String) args[0];
+                return entry;
+            case "getTarget":
+                return target;
+            case "setTarget":
+                target = (String) args[0];
+                return entry;
+            case "getIdentifier":
+                return identifier;
+            case "setIdentifier":
+                identifier = (Integer) args[0];
+                return entry;
+            case "getType":
+                return type;
+            case "setType":
+                type = (MenuAction) args[0];
+                return entry;
+            case "getParam0":
+                return param0;
+            case "setParam0":
+                param0 = (Integer) args[0];
+                return entry;
+            case "getParam1":
+                return param1;
+            case "setParam1":
+                param1 = (Integer) args[0];
+                return entry;
+            case "getItemId":
+                return itemId;
+            case "onClick":
+                onClick = (Consumer<MenuEntry>) args[0];
+                return entry;
+            default:
+                return StubClient.invokeDefault(proxy, method, args);
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.AccidentalTeleportBlocker;
+
+import com.google.inject.Guice;
+import net.runelite.api.Client;
+import net.runelite.api.InventoryID;
+import net.runelite.api.Item;
+import net.runelite.api.ItemContainer;
+import net.runelite.api.MenuAction;
+import net.runelite.api.MenuEntry;
+import net.runelite.api.Skill;
+import net.runelite.api.events.AnimationChanged;
+import net.runelite.api.events.GameTick;
+import net.runelite.api.events.GraphicChanged;
+import net.runelite.api.events.ItemContainerChanged;
+import net.runelite.api.events.MenuOpened;
+import net.runelite.api.events.MenuOptionClicked;
+import net.runelite.api.events.StatChanged;
+import net.runelite.api.events.VarbitChanged;
+import net.runelite.api.events.WidgetLoaded;
+import net.runelite.client.callback.ClientThread;
+import net.runelite.client.config.ConfigManager;
+import net.runelite.client.game.ItemManager;
+import net.runelite.client.input.KeyManager;
+import net.runelite.client.menus.MenuManager;
+import net.runelite.client.ui.overlay.OverlayManager;
+import net.runelite.client.ui.overlay.infobox.InfoBoxManager;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * A started plugin on top of a {@link StubClient}, together with realistic synthetic menu entries:
+ * color-tagged spell names of all four spellbooks on spellbook widgets, and the non-spell entries a
+ * crowded scene menu is made of. The spellbook widgets of all four spellbooks are loaded, each spell
+ * on its own widget.
+ */
+final class SyntheticSession {
+
+    static final int SPELLBOOK_GROUP_ID = 218;
+    static final int INVENTORY_WIDGET_ID = 149 << 16;
+    static final int EQUIPMENT_WIDGET_ID = 387 << 16;
+    private static final int TELEPORT_CHILD_BASE = 8;
+    private static final int SPELL_CHILD_BASE = 200;
+    private static final int CAST_ANIMATION = 711; // Standard spellbook cast animation from the game
+
+    private static final GameTick GAME_TICK = new GameTick();
+    private static final StatChanged MAGIC_XP_BEFORE_CAST = new StatChanged(Skill.MAGIC, 13_034_000, 99, 99);
+    private static final StatChanged MAGIC_XP_AFTER_CAST = new StatChanged(Skill.MAGIC, 13_034_431, 99, 99);
+
+    private static final MenuAction[] OBJECT_OPTIONS = {
+            MenuAction.GAME_OBJECT_FIRST_OPTION, MenuAction.GAME_OBJECT_SECOND_OPTION, MenuAction.GAME_OBJECT_THIRD_OPTION,
+            MenuAction.GAME_OBJECT_FOURTH_OPTION, MenuAction.GAME_OBJECT_FIFTH_OPTION
+    };
+
+    /**
+     * Non-teleport spells per spellbook, in spellbook order
+     */
+    static final Map<Spellbook, List<String>> SPELLS = new EnumMap<>(Spellbook.class);
+
+    static {
+        SPELLS.put(Spellbook.STANDARD, List.of("Wind Strike", "Confuse", "Water Strike", "Enchant Crossbow Bolt",
+                "Earth Strike", "Weaken", "Fire Strike", "Bones to Bananas", "Wind Bolt", "Curse", "Bind",
+                "Low Level Alchemy", "Water Bolt", "Earth Bolt", "Telekinetic Grab", "Fire Bolt", "Crumble Undead",
+                "Wind Blast", "Superheat Item", "Water Blast", "Iban Blast", "Snare", "Magic Dart", "Earth Blast",
+                "High Level Alchemy", "Charge Water Orb", "Fire Blast", "Charge Earth Orb", "Bones to Peaches",
+                "Saradomin Strike", "Claws of Guthix", "Flames of Zamorak", "Wind Wave", "Charge Fire Orb",
+                "Water Wave", "Charge Air Orb", "Vulnerability", "Earth Wave", "Enfeeble", "Fire Wave", "Entangle",
+                "Stun", "Charge", "Wind Surge", "Water Surge", "Earth Surge", "Fire Surge"));
+        SPELLS.put(Spellbook.ANCIENT, List.of("Smoke Rush", "Shadow Rush", "Blood Rush", "Ice Rush", "Smoke Burst",
+                "Shadow Burst", "Blood Burst", "Ice Burst", "Smoke Blitz", "Shadow Blitz", "Blood Blitz", "Ice Blitz",
+                "Smoke Barrage", "Shadow Barrage", "Blood Barrage", "Ice Barrage"));
+        SPELLS.put(Spellbook.LUNAR, List.of("Bake Pie", "Geomancy", "Cure Plant", "Monster Examine", "NPC Contact",
+                "Cure Other", "Humidify", "Cure Me", "Hunter Kit", "Cure Group", "Stat Spy", "Spin Flax",
+                "Superglass Make", "Tan Leather", "Dream", "String Jewellery", "Stat Restore Pot Share",
+                "Magic Imbue", "Fertile Soil", "Boost Potion Share", "Plank Make", "Recharge Dragonstone",
+                "Energy Transfer", "Heal Other", "Vengeance Other", "Vengeance", "Heal Group", "Spellbook Swap"));
+        SPELLS.put(Spellbook.ARCEUUS, List.of("Reanimate Goblin", "Lesser Corruption", "Basic Reanimation",
+                "Resurrect Lesser Ghost", "Dark Lure", "Mark of Darkness", "Inferior Demonbane", "Superior Demonbane",
+                "Dark Demonbane", "Ward of Arceuus", "Shadow Veil", "Vile Vigour", "Degrime", "Resurrect Crops",
+                "Death Charge", "Demonic Offering", "Sinister Offering", "Greater Corruption",
+                "Resurrect Greater Ghost"));
+    }
+
+    /**
+     * Every non-teleport spell, the index is used for the widget child
+     */
+    static final List<String> ALL_SPELLS = SPELLS.values().stream()
+            .flatMap(List::stream)
+            .collect(Collectors.toUnmodifiableList());
+
+    final StubClient client = new StubClient();
+    final StubConfig config;
+    final RuleStore ruleStore;
+    final AccidentalTeleportBlockerPlugin plugin = new AccidentalTeleportBlockerPlugin();
+
+    private final AnimationChanged animationChanged = new AnimationChanged();
+    private final GraphicChanged graphicChanged = new GraphicChanged();
+
+    private SyntheticSession(StubConfig config) {
+        this.config = config;
+        this.ruleStore = new RuleStore(mock(ConfigManager.class), config);
+        animationChanged.setActor(client.getLocalPlayer());
+        graphicChanged.setActor(client.getLocalPlayer());
+    }
+
+    static SyntheticSession start(StubConfig config) {
+        return start(config, true);
+    }
+
+    /**
+     * @param spellbookWidgets whether to load the spellbook widgets, without them the plugin indexes spells
+     *                         from the menu targets
+     */
+    static SyntheticSession start(StubConfig config, boolean spellbookWidgets) {
+        SyntheticSession session = new SyntheticSession(config);
+
+        if (spellbookWidgets) {
+            addSpellbookWidgets(session.client);
+        }
+
+        Guice.createInjector(binder -> {
+            binder.bind(Client.class).toInstance(session.client.getClient());
+            binder.bind(AccidentalTeleportBlockerPluginConfig.class).toInstance(config);
+            binder.bind(ConfigManager.class).toInstance(mock(ConfigManager.class));
+            binder.bind(MenuManager.class).toInstance(mock(MenuManager.class));
+            binder.bind(RuleStore.class).toInstance(session.ruleStore);
+            binder.bind(KeyManager.class).toInstance(mock(KeyManager.class));
+            binder.bind(OverlayManager.class).toInstance(mock(OverlayManager.class));
+            binder.bind(InfoBoxManager.class).toInstance(mock(InfoBoxManager.class));
+            binder.bind(ItemManager.class).toInstance(mock(ItemManager.class));
+            binder.bind(ScheduledExecutorService.class).toInstance(mock(ScheduledExecutorService.class));
+            binder.bind(ClientThread.class).toInstance(new ClientThread() {
+                @Override
+                public void invoke(Runnable runnable) {
+                    runnable.run();
+                }
+
+                @Override
+                public void invokeLater(Runnable runnable) {
+                    runnable.run();
+                }
+            });
+        }).injectMembers(session.plugin);
+
+        session.plugin.startUp();
+        return session;
+    }
+
+    void setSpellbook(Spellbook spellbook) {
+        client.spellbookVarbit = spellbook.ordinal();
+
+        VarbitChanged event = new VarbitChanged();
+        event.setVarbitId(Spellbook.VARBIT);
+        event.setValue(spellbook.ordinal());
+        plugin.onVarbitChanged(event);
+    }
+
+    /**
+     * Loads the spellbook interface again, which rebuilds the plugin's spell index from the widgets and
+     * forgets spells it indexed from menu targets.
+     */
+    void reloadSpellbookInterface() {
+        WidgetLoaded event = new WidgetLoaded();
+        event.setGroupId(SPELLBOOK_GROUP_ID);
+        plugin.onWidgetLoaded(event);
+    }
+
+    /**
+     * Ends the current game tick.
+     */
+    void tick() {
+        client.tickCount++;
+        plugin.onGameTick(GAME_TICK);
+    }
+
+    /**
+     * Sends the effects of the last clicked spell being cast, a magic xp drop and a cast animation, and
+     * ends the tick so the plugin confirms the cast. Allocation-free, the xp events are preallocated.
+     */
+    void completeCast() {
+        plugin.onStatChanged(MAGIC_XP_BEFORE_CAST);
+        plugin.onStatChanged(MAGIC_XP_AFTER_CAST);
+        animate(CAST_ANIMATION);
+        tick();
+    }
+
+    void animate(int animation) {
+        client.playerAnimation = animation;
+        plugin.onAnimationChanged(animationChanged);
+    }
+
+    void graphic(int graphic) {
+        client.playerGraphic = graphic;
+        plugin.onGraphicChanged(graphicChanged);
+    }
+
+    void inventoryChanged(Item... items) {
+        ItemContainer inventory = StubClient.proxy(ItemContainer.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return InventoryID.INVENTORY.getId();
+                case "getItems":
+                    return items;
+                default:
+                    return StubClient.invokeDefault(proxy, method, args);
+            }
+        });
+
+        plugin.onItemContainerChanged(new ItemContainerChanged(InventoryID.INVENTORY.getId(), inventory));
+    }
+
+    /**
+     * Blocks every teleport of the spellbook through the plugin's own shift right-click entries.
+     */
+    void blockAllTeleports(Spellbook spellbook) {
+        blockTeleports(spellbook, -1L);
+    }
+
+    /**
+     * Blocks the teleports of the spellbook that are in the mask through the plugin's own shift
+     * right-click entries, and leaves the spellbook selected.
+     */
+    void blockTeleports(Spellbook spellbook, long mask) {
+        setSpellbook(spellbook);
+
+        boolean shiftHeld = client.shiftHeld;
+        client.shiftHeld = true;
+
+        for (TeleportSpell teleport : teleports(spellbook)) {
+            if ((mask & teleport.getBit()) == 0) {
+                continue;
+            }
+
+            MenuEntry cast = castTeleport(teleport);
+            client.resetMenu();
+            plugin.onMenuOpened(menu(cast));
+            clickCreatedMenuEntry("Enable block", cast.getTarget());
+        }
+
+        client.resetMenu();
+        client.shiftHeld = shiftHeld;
+    }
+
+    /**
+     * Blocks an item or object option through the plugin's own shift right-click entry.
+     */
+    void blockOption(MenuEntry entry) {
+        boolean shiftHeld = client.shiftHeld;
+        client.shiftHeld = true;
+
+        client.resetMenu();
+        plugin.onMenuOpened(menu(entry));
+        clickCreatedMenuEntry("Enable block", entry.getOption() + " " + entry.getTarget());
+
+        client.resetMenu();
+        client.shiftHeld = shiftHeld;
+    }
+
+    /**
+     * Blocks the item or object option with the given {@link OptionCategory} key.
+     */
+    void blockOption(OptionCategory category, int key) {
+        int id = OptionCategory.idOf(key);
+        int option = OptionCategory.optionOf(key);
+
+        switch (category) {
+            case ITEM:
+                blockOption(itemOption("Rub", "Item " + id, id, option));
+                break;
+            case WORN:
+                blockOption(wornOption("Teleport", "Item " + id, id, option));
+                break;
+            default:
+                blockOption(objectOption("Enter", "Object " + id, id, option));
+        }
+    }
+
+    /**
+     * Clicks the menu entry the plugin created since the menu was last reset, like clicking it in the game.
+     *
+     * @return whether there was such an entry
+     */
+    boolean clickCreatedMenuEntry(String option, String target) {
+        for (int i = 0; i < client.getCreatedMenuEntryCount(); i++) {
+            MenuEntry entry = client.getCreatedMenuEntry(i);
+
+            if (option.equals(entry.getOption()) && target.equals(entry.getTarget())) {
+                StubMenuEntry.of(entry).click();
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Adds a widget for every spell and teleport, with the widget ids of {@link #castSpell(String)} and
+     * {@link #castTeleport(TeleportSpell)}.
+     */
+    static void addSpellbookWidgets(StubClient client) {
+        for (TeleportSpell teleport : TeleportSpell.values()) {
+            client.addWidget(castTeleport(teleport).getParam1(), colored(teleport.getDisplayName()));
+        }
+
+        for (String spell : ALL_SPELLS) {
+            client.addWidget(castSpell(spell).getParam1(), colored(spell));
+        }
+    }
+
+    static List<TeleportSpell> teleports(Spellbook spellbook) {
+        List<TeleportSpell> teleports = new ArrayList<>();
+
+        for (TeleportSpell teleport : TeleportSpell.values()) {
+            if (teleport.getSpellbook() == spellbook) {
+                teleports.add(teleport);
+            }
+        }
+
+        return teleports;
+    }
+
+    /**
+     * Comma-separated trigger list of the first {@code count} spells, cycling through all spellbooks.
+     */
+    static String triggerList(int count) {
+        List<String> spells = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            spells.add(ALL_SPELLS.get(i % ALL_SPELLS.size()));
+        }
+
+        return String.join(", ", spells);
+    }
+
+    static String colored(String name) {
+        return "<col=00ff00>" + name + "</col>";
+    }
+
+    static MenuEntry castTeleport(TeleportSpell teleport) {
+        return StubMenuEntry.create("Cast", colored(teleport.getDisplayName()), MenuAction.CC_OP, -1,
+                SPELLBOOK_GROUP_ID << 16 | (TELEPORT_CHILD_BASE + teleport.ordinal()));
+    }
+
+    static MenuEntry castSpell(String spell) {
+        return StubMenuEntry.create("Cast", colored(spell), MenuAction.WIDGET_TARGET, -1,
+                SPELLBOOK_GROUP_ID << 16 | (SPELL_CHILD_BASE + ALL_SPELLS.indexOf(spell)));
+    }
+
+    /**
+     * Option of an inventory item, options are numbered from 1.
+     */
+    static MenuEntry itemOption(String option, String item, int itemId, int number) {
+        MenuEntry entry = StubMenuEntry.create(option, "<col=ff9040>" + item, MenuAction.CC_OP, 0, INVENTORY_WIDGET_ID)
+                .setIdentifier(number);
+        return StubMenuEntry.of(entry).setItemId(itemId);
+    }
+
+    /**
+     * Option of a worn item, options are numbered from 1.
+     */
+    static MenuEntry wornOption(String option, String item, int itemId, int number) {
+        MenuEntry entry = StubMenuEntry.create(option, "<col=ff9040>" + item, MenuAction.CC_OP, -1, EQUIPMENT_WIDGET_ID)
+                .setIdentifier(number);
+        return StubMenuEntry.of(entry).setItemId(itemId);
+    }
+
+    /**
+     * Option of a game object, options are numbered from 1 to 5.
+     */
+    static MenuEntry objectOption(String option, String object, int objectId, int number) {
+        return StubMenuEntry.create(option, "<col=ffff>" + object, OBJECT_OPTIONS[number - 1], 52, 49)
+                .setIdentifier(objectId);
+    }
+
+    /**
+     * Entries of a right-click in a busy area, none of them a spell.
+     */
+    static MenuEntry[] sceneEntries() {
+        return new MenuEntry[]{
+                StubMenuEntry.create("Cancel", "", MenuAction.CANCEL, 0, 0),
+                StubMenuEntry.create("Examine", "<col=ffff>Bank booth", MenuAction.EXAMINE_OBJECT, 52, 49),
+                StubMenuEntry.create("Collect", "<col=ffff>Bank booth", MenuAction.GAME_OBJECT_THIRD_OPTION, 52, 49),
+                StubMenuEntry.create("Bank", "<col=ffff>Bank booth", MenuAction.GAME_OBJECT_SECOND_OPTION, 52, 49),
+                StubMenuEntry.create("Walk here", "", MenuAction.WALK, 0, 0),
+                StubMenuEntry.create("Attack", "<col=ffff00>Goblin<col=ff00>  (level-2)", MenuAction.NPC_SECOND_OPTION, 0, 0),
+                StubMenuEntry.create("Use", "<col=ff9040>Nature rune", MenuAction.ITEM_FIRST_OPTION, 3, 9764864),
+                StubMenuEntry.create("Trade with", "<col=ffffff>Zezima<col=ff00>  (level-126)", MenuAction.NPC_SECOND_OPTION, 0, 0)
+        };
+    }
+
+    static MenuOpened menu(MenuEntry... entries) {
+        MenuOpened event = new MenuOpened();
+        event.setMenuEntries(entries);
+        return event;
+    }
+
+    static MenuOptionClicked click(MenuEntry entry) {
+        return new MenuOptionClicked(entry);
+    }
+}
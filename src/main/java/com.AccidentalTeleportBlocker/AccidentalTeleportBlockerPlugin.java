@@ -2,22 +2,48 @@ package com.AccidentalTeleportBlocker;
 
 import com.google.inject.Provides;
 import net.runelite.api.*;
-import net.runelite.api.events.MenuEntryAdded;
+import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.events.AnimationChanged;
+import net.runelite.api.events.CanvasSizeChanged;
+import net.runelite.api.events.CommandExecuted;
+import net.runelite.api.events.GraphicChanged;
+import net.runelite.api.events.ItemContainerChanged;
+import net.runelite.api.events.MenuOpened;
 import net.runelite.api.events.MenuOptionClicked;
+import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.GameTick;
+import net.runelite.api.events.ScriptPostFired;
 import net.runelite.api.events.StatChanged;
+import net.runelite.api.events.VarbitChanged;
+import net.runelite.api.events.WidgetLoaded;
+import net.runelite.client.RuneLite;
+import net.runelite.client.callback.ClientThread;
 import net.runelite.client.config.ConfigManager;
+import net.runelite.client.events.ConfigChanged;
 import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.input.KeyManager;
 import net.runelite.client.menus.MenuManager;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
+import net.runelite.client.ui.overlay.OverlayManager;
+import net.runelite.client.util.HotkeyListener;
 
 import javax.inject.Inject;
-import java.time.Duration;
-import java.time.Instant;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * 30-08-2025 - Nobodycalled - Initial release
@@ -28,7 +54,12 @@ import java.util.Set;
  * Features:
  * - Block teleport spells unless a modifier key (CTRL/SHIFT) is held
  * - Allow users to manage which teleports are blocked per spellbook
+ * - Block teleport item and object options, like rubbing jewellery or entering portals
+ * - Save blocks and settings as named profiles and switch between them by command or hotkey
+ * - Optionally share the blocks between the clients on one computer
  * - Optionally only block teleports for X seconds after casting custom trigger spells
+ * - Optionally only block the teleports next to the trigger spell in the spellbook
+ * - Suggest blocking teleports that look misclicked
  * - Case-insensitive, comma-separated list of trigger spells configurable by user
  */
 @PluginDescriptor(
@@ -36,6 +67,29 @@ import java.util.Set;
 )
 public class AccidentalTeleportBlockerPlugin extends Plugin {
 
+    /**
+     * Session recordings, the metrics log and the shared rules go here
+     */
+    static final File PLUGIN_DIR = new File(RuneLite.RUNELITE_DIR, "accidental-teleport-blocker");
+
+    private static final File SHARED_RULES_FILE = new File(PLUGIN_DIR, "shared-rules.bin");
+
+    private static final String SHOW_METRICS_OVERLAY_KEY = "showMetricsOverlay";
+    private static final String METRICS_DUMP_MINUTES_KEY = "metricsDumpMinutes";
+    private static final String NEXT_PROFILE_HOTKEY_KEY = "nextProfileHotkey";
+    private static final String NOTIFICATION_STYLE_KEY = "notificationStyle";
+    private static final String NOTIFICATION_COALESCE_TICKS_KEY = "notificationCoalesceTicks";
+    private static final String SUGGEST_BLOCKS_AFTER_KEY = "suggestBlocksAfter";
+    private static final String SHARE_RULES_KEY = "shareRulesBetweenClients";
+    private static final int LISTED_MISCLICKS = 5;
+    private static final int TICKS_PER_MINUTE = 100;
+    private static final int MAX_PROFILE_NAME_LENGTH = 32;
+
+    /**
+     * Ticks the shared rules may fail to read with the same sequence number before sharing stops
+     */
+    private static final int MAX_FAILED_SHARED_READS = 5;
+
     @Inject
     private Client client;
 
@@ -43,385 +97,1003 @@ public class AccidentalTeleportBlockerPlugin extends Plugin {
     private AccidentalTeleportBlockerPluginConfig config;
 
     @Inject
-    private ConfigManager configManager;
+    private ClientThread clientThread;
+
+    @Inject
+    private RuleStore ruleStore;
 
     @Inject
     private MenuManager menuManager;
 
-    private volatile Instant lastCustomSpellCastAt = null;
+    @Inject
+    private OverlayManager overlayManager;
+
+    @Inject
+    private KeyManager keyManager;
 
-    private volatile String pendingSpellName = null;
+    @Inject
+    private ScheduledExecutorService executor;
 
-    private static final String BLOCKED_TELEPORTS_KEY_PREFIX = "blockedTeleports_";
+    @Inject
+    private PluginMetrics metrics;
 
-    private final Map<String, Set<String>> blockedTeleportsPerSpellbook = new HashMap<>();
-    private final Set<String> customTriggerSpells = new HashSet<>();
+    @Inject
+    private MetricsOverlay metricsOverlay;
 
-    private static final String STANDARD_SPELLBOOK = "standard";
-    private static final String ANCIENT_SPELLBOOK = "ancient";
-    private static final String LUNAR_SPELLBOOK = "lunar";
-    private static final String ARCEUUS_SPELLBOOK = "arceuus";
+    @Inject
+    private BlockNotifier notifier;
 
     /**
-     * Maps base teleport names to their alternative names/locations
+     * Block windows opened by trigger spells, advanced on every {@link GameTick}
      */
-    private static final Map<String, Set<String>> TELEPORT_GROUPS = Map.of(
-            "varrock teleport", Set.of("grand exchange"),
-            "teleport to house", Set.of("outside"),
-            "camelot teleport", Set.of("seers"),
-            "watchtower teleport", Set.of("yanille")
-    );
+    private final TriggerWindowTimer triggerWindows = new TriggerWindowTimer();
 
-    private String getBaseTeleportName(String teleportName) {
-        String lower = teleportName.toLowerCase();
+    /**
+     * Confirms cast clicks from the effects of the cast, confirmed casts of trigger spells open a window
+     */
+    private final CastCorrelator castCorrelator = new CastCorrelator();
 
-        // Check if this teleport name matches any of the alternative names
-        for (Map.Entry<String, Set<String>> entry : TELEPORT_GROUPS.entrySet()) {
-            if (entry.getValue().stream().anyMatch(lower::contains)) {
-                return entry.getKey(); // Return the base name instead of the alternative
-            }
-        }
+    /**
+     * Counts teleports that look like misclicks, to suggest blocking them
+     */
+    private final MisclickDetector misclicks = new MisclickDetector();
 
-        return lower; // No grouping needed, return as-is
-    }
+    /**
+     * Spellbook slot of the trigger spell that opened the last window, to only block teleports near it
+     */
+    private final TriggerProximity triggerProximity = new TriggerProximity();
+
+    /**
+     * Spell of the last cast click in the spellbook, which spells cast on something else were selected from
+     */
+    private SpellIndex.Spell selectedSpell;
+
+    /**
+     * Holds the compiled block rules (blocked teleports, trigger spells and settings) and makes the block decision.
+     * Changes publish a new snapshot, event handlers only read the current one without parsing the config.
+     */
+    private final BlockPolicyEngine policyEngine = new BlockPolicyEngine();
+
+    /**
+     * Reused for every block check on the client thread
+     */
+    private final BlockInput blockInput = new BlockInput();
+
+    /**
+     * Trigger ids of cast targets, valid for the rules they were matched against
+     */
+    private final CastTriggerCache castTriggers = new CastTriggerCache();
+
+
+    /**
+     * Item and object options that get a shift right-click block entry, on top of the options of worn items
+     * and the options that are blocked already
+     */
+    private static final String[] TELEPORT_OPTION_PREFIXES = {
+            "Rub", "Break", "Teleport", "Enter", "Travel", "Commune", "Zanaris", "Configure", "Last-destination"
+    };
+
+    /**
+     * Active spellbook, kept up to date from {@link VarbitChanged} so block checks don't have to read the varbit
+     */
+    private Spellbook currentSpellbook = Spellbook.STANDARD;
+
+    /**
+     * Spells of the active spellbook by widget, rebuilt when the spellbook interface loads or is redrawn, or the spellbook changes
+     */
+    private final SpellIndex spellIndex = new SpellIndex();
+
+    /**
+     * Click handlers of the shift right-click menu entries, created once and reused every time the menu opens.
+     * Teleport handlers are indexed by {@link TeleportSpell} ordinal, trigger spell handlers are keyed by spell name.
+     * Item and object option handlers are indexed by {@link OptionCategory} ordinal and read the option key
+     * from the identifier of the clicked entry.
+     */
+    private final List<Consumer<MenuEntry>> teleportBlockToggles = Arrays.stream(TeleportSpell.values())
+            .map(teleport -> (Consumer<MenuEntry>) e -> toggleBlockedTeleport(teleport))
+            .collect(Collectors.toUnmodifiableList());
+    private final List<Consumer<MenuEntry>> optionBlockToggles = Arrays.stream(OptionCategory.values())
+            .map(category -> (Consumer<MenuEntry>) e -> toggleBlockedOption(category, e.getIdentifier()))
+            .collect(Collectors.toUnmodifiableList());
+    private final Map<String, Consumer<MenuEntry>> triggerSpellToggles = new HashMap<>();
+    private final Function<String, Consumer<MenuEntry>> triggerSpellToggleFactory = this::createTriggerSpellToggle;
+
+    private final SessionRecorder recorder = new SessionRecorder();
+
+    /**
+     * Block lists shared with the other clients on this computer, null while not sharing. The sequence number
+     * and the rules of the last write or adopted change tell changes of other clients from our own.
+     */
+    private SharedRuleFile sharedRules;
+    private long sharedSequence;
+    private RuleSnapshot lastSharedRules;
+    private long failedReadSequence;
+    private int failedReads;
+
+    /**
+     * Game ticks since the metrics were last written to the log
+     */
+    private int ticksSinceMetricsDump;
+
+    /**
+     * Key events come from the AWT thread, the switch itself happens on the client thread
+     */
+    private final HotkeyListener nextProfileHotkeyListener = new HotkeyListener(() -> config.nextProfileHotkey()) {
+        @Override
+        public void hotkeyPressed() {
+            clientThread.invokeLater(() -> {
+                String next = ruleStore.getNextProfile();
+
+                if (next != null) {
+                    switchProfile(next);
+                }
+            });
+        }
+    };
 
     @Override
     protected void startUp() {
-        loadBlockedTeleports();
-        loadCustomTriggerSpells();
-    }
+        updateMetricsOverlay();
+        keyManager.registerKeyListener(nextProfileHotkeyListener);
 
-    @Override
-    protected void shutDown() {
+        // On the client thread like the event handlers, after the teardown of an earlier shutdown
+        clientThread.invokeLater(() -> {
+            // The block lists come from the active profile, the settings always come from the config
+            RuleSnapshot rules = ruleStore.loadProfiles();
 
-        lastCustomSpellCastAt = null;
+            if (rules == null) {
+                long[] blockedTeleportMasks = new long[Spellbook.values().length];
+                ruleStore.loadBlockedTeleports(blockedTeleportMasks);
 
-        blockedTeleportsPerSpellbook.clear();
-        customTriggerSpells.clear();
-    }
+                rules = RuleSnapshot.EMPTY
+                        .withBlockedTeleportMasks(blockedTeleportMasks)
+                        .withBlockedOptions(ruleStore.loadBlockedOptions());
+            }
 
-    private void loadBlockedTeleports() {
-        for (String spellbook : new String[]{STANDARD_SPELLBOOK, ANCIENT_SPELLBOOK, LUNAR_SPELLBOOK, ARCEUUS_SPELLBOOK}) {
-            String blocked = configManager.getConfiguration("AccidentalTeleportBlocker", BLOCKED_TELEPORTS_KEY_PREFIX + spellbook);
-            Set<String> blockedSet = new HashSet<>();
+            TriggerSpellList triggerSpells = TriggerSpellList.parse(config.customTriggerSpells());
+            policyEngine.publish(rules.withConfig(config).withTriggerSpells(triggerSpells));
+            resetTriggers(triggerSpells.size());
+            warnInvalidWindows(triggerSpells);
+            notifier.start(this, config.notificationStyle(), config.notificationCoalesceTicks());
+            misclicks.configure(config.suggestBlocksAfter());
 
-            if (blocked != null && !blocked.isEmpty()) {
-                for (String s : blocked.split(",")) {
-                    blockedSet.add(s.trim().toLowerCase());
-                }
+            if (client.getGameState() == GameState.LOGGED_IN) {
+                currentSpellbook = Spellbook.fromVarbit(client.getVarbitValue(Spellbook.VARBIT));
+                buildSpellIndex();
             }
 
-            blockedTeleportsPerSpellbook.put(spellbook, blockedSet);
-        }
+            updateRecording();
+            updateSharing();
+        });
+    }
+
+    @Override
+    protected void shutDown() {
+        overlayManager.remove(metricsOverlay);
+        keyManager.unregisterKeyListener(nextProfileHotkeyListener);
+
+        // A game tick may still be handled, the state it uses is torn down on the client thread after it
+        clientThread.invoke(() -> {
+            ruleStore.flush(policyEngine.getRules());
+            recorder.stop();
+            stopSharing();
+            notifier.stop();
+
+            triggerWindows.reset(0);
+            castCorrelator.reset();
+            misclicks.reset();
+            triggerProximity.reset();
+            selectedSpell = null;
+            ticksSinceMetricsDump = 0;
+
+            policyEngine.publish(RuleSnapshot.EMPTY);
+            triggerSpellToggles.clear();
+            currentSpellbook = Spellbook.STANDARD;
+            spellIndex.reset(currentSpellbook);
+            castTriggers.clear();
+        });
     }
 
     private void loadCustomTriggerSpells() {
-        customTriggerSpells.clear();
-        String spellList = config.customTriggerSpells();
+        TriggerSpellList spells = TriggerSpellList.parse(config.customTriggerSpells());
 
-        if (spellList != null && !spellList.trim().isEmpty()) {
-            String[] spells = spellList.split(",");
-            for (String spell : spells) {
-                customTriggerSpells.add(spell.trim().toLowerCase());
-            }
+        // Our own writes come back through ConfigChanged, keep the open windows if nothing changed
+        if (!spells.format().equals(policyEngine.getRules().getTriggerSpells().format())) {
+            publishCustomTriggerSpells(spells);
+            warnInvalidWindows(spells);
         }
     }
 
-    private void saveBlockedTeleports() {
-        for (Map.Entry<String, Set<String>> entry : blockedTeleportsPerSpellbook.entrySet()) {
-            String spellbook = entry.getKey();
-            Set<String> teleports = entry.getValue();
-
-            configManager.setConfiguration("AccidentalTeleportBlocker", BLOCKED_TELEPORTS_KEY_PREFIX + spellbook, String.join(",", teleports));
+    /**
+     * Tells the player which windows in the trigger spell list are ignored. Chat is only used from the client thread.
+     */
+    private void warnInvalidWindows(TriggerSpellList spells) {
+        if (spells.getInvalidWindows().isEmpty()) {
+            return;
         }
+
+        String invalid = String.join(", ", spells.getInvalidWindows());
+        clientThread.invokeLater(() -> sendMessage("Using the unblock delay for " + invalid
+                + ", windows are whole ticks or seconds up to " + TriggerWindowTimer.MAX_WINDOW_TICKS + "t or "
+                + TriggerSpellList.MAX_WINDOW_SECONDS + "s"));
+    }
+
+    /**
+     * Trigger ids change with the list, so the open windows are closed when a new list is published.
+     * ConfigChanged can come from the config panel, the timer is only touched on the client thread.
+     */
+    private void publishCustomTriggerSpells(TriggerSpellList spells) {
+        policyEngine.update(rules -> rules.withTriggerSpells(spells));
+        clientThread.invokeLater(() -> resetTriggers(spells.size()));
+    }
+
+    /**
+     * Closes the open windows and drops the buffered casts, whose trigger ids belong to the old list.
+     */
+    private void resetTriggers(int triggerCount) {
+        triggerWindows.reset(triggerCount);
+        castCorrelator.clearCasts();
+        triggerProximity.reset();
     }
 
     @Subscribe
-    public void onMenuEntryAdded(MenuEntryAdded event) {
-        if (!client.isKeyPressed(KeyCode.KC_SHIFT)) return;
+    public void onConfigChanged(ConfigChanged event) {
+        // Our own block list and profile writes come back through here as well
+        if (!RuleStore.CONFIG_GROUP.equals(event.getGroup()) || RuleStore.isStorageKey(event.getKey())) {
+            return;
+        }
 
-        String option = event.getOption();
-        String target = event.getTarget();
-        String spellName = getSpellNameFromTarget(target);
+        if (SessionRecorder.CONFIG_KEY.equals(event.getKey())) {
+            clientThread.invokeLater(this::updateRecording);
+            return;
+        }
 
-        if (!option.equals("Cast")) {
+        if (SHARE_RULES_KEY.equals(event.getKey())) {
+            clientThread.invokeLater(this::updateSharing);
             return;
         }
 
-        if (isTeleportSpellOption(target)) { // Teleport spells
-            String baseTeleport = getBaseTeleportName(spellName);
-            boolean blocked = isBlockedTeleport(baseTeleport);
-
-            String menuText = blocked ? "Disable block" : "Enable block";
-
-            client.getMenu().createMenuEntry(-1)
-                    .setOption(menuText)
-                    .setTarget(target)
-                    .setType(MenuAction.RUNELITE)
-                    .onClick(e -> {
-                        if (blocked) {
-                            unblockTeleport(baseTeleport);
-                        } else {
-                            blockTeleport(baseTeleport);
-                        }
-                        saveBlockedTeleports();
-                    });
-        } else { // All other spells
+        if (SHOW_METRICS_OVERLAY_KEY.equals(event.getKey())) {
+            updateMetricsOverlay();
+            return;
+        }
+
+        if (NOTIFICATION_STYLE_KEY.equals(event.getKey()) || NOTIFICATION_COALESCE_TICKS_KEY.equals(event.getKey())) {
+            clientThread.invokeLater(() -> notifier.configure(config.notificationStyle(), config.notificationCoalesceTicks()));
+            return;
+        }
+
+        if (SUGGEST_BLOCKS_AFTER_KEY.equals(event.getKey())) {
+            clientThread.invokeLater(() -> misclicks.configure(config.suggestBlocksAfter()));
+            return;
+        }
+
+        if (METRICS_DUMP_MINUTES_KEY.equals(event.getKey()) || NEXT_PROFILE_HOTKEY_KEY.equals(event.getKey())) {
+            return;
+        }
+
+        if (RuleStore.CUSTOM_TRIGGER_SPELLS_KEY.equals(event.getKey())) {
             loadCustomTriggerSpells();
+        } else {
+            policyEngine.update(rules -> rules.withConfig(config));
+        }
 
-            boolean isAlreadyTrigger = customTriggerSpells.contains(spellName);
-            String menuText = isAlreadyTrigger ? "Remove block trigger" : "Add block trigger";
+        clientThread.invokeLater(ruleStore::markProfileDirty);
 
-            client.getMenu().createMenuEntry(-1)
-                    .setOption(menuText)
-                    .setTarget(target)
-                    .setType(MenuAction.RUNELITE)
-                    .onClick(e -> {
-                        if (isAlreadyTrigger) {
-                            removeFromCustomTriggerSpells(spellName);
-                        } else {
-                            addToCustomTriggerSpells(spellName);
-                        }
-                    });
+        clientThread.invokeLater(() -> {
+            if (recorder.isRecording()) {
+                recorder.recordRulesChanged(policyEngine.getRules());
+            }
+        });
+    }
+
+    /**
+     * Starts or stops recording the session to follow the config. Only call it from the client thread.
+     */
+    private void updateRecording() {
+        if (config.recordSessions() && !recorder.isRecording()) {
+            recorder.start(policyEngine.getRules(), currentSpellbook);
+
+            if (recorder.isRecording()) {
+                recorder.recordSpellbookSlots(spellIndex);
+            }
+        } else if (!config.recordSessions()) {
+            recorder.stop();
         }
     }
 
     @Subscribe
-    public void onMenuOptionClicked(MenuOptionClicked event) {
-        String option = event.getMenuOption();
-        String target = event.getMenuTarget();
+    public void onCommandExecuted(CommandExecuted event) {
+        if (!"atb".equalsIgnoreCase(event.getCommand())) {
+            return;
+        }
 
-        if (config.enableCustomTriggerSpells()) {
-            if (option.equals("Cast")) {
-                pendingSpellName = getSpellNameFromTarget(target);
-            } else {
-                pendingSpellName = null;
+        String[] args = event.getArguments();
+
+        if (args.length == 1 && "profiles".equalsIgnoreCase(args[0])) {
+            listProfiles();
+        } else if (args.length == 1 && "misclicks".equalsIgnoreCase(args[0])) {
+            listMisclicks();
+        } else if (args.length >= 3 && "profile".equalsIgnoreCase(args[0]) && "save".equalsIgnoreCase(args[1])) {
+            saveProfile(String.join(" ", Arrays.copyOfRange(args, 2, args.length)));
+        } else if (args.length >= 3 && "profile".equalsIgnoreCase(args[0]) && "delete".equalsIgnoreCase(args[1])) {
+            String name = String.join(" ", Arrays.copyOfRange(args, 2, args.length));
+            sendMessage(ruleStore.deleteProfile(name) ? "Deleted profile " + name : "There is no profile named " + name);
+        } else if (args.length >= 2 && "profile".equalsIgnoreCase(args[0])) {
+            String name = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+
+            if (!switchProfile(name)) {
+                sendMessage("There is no profile named " + name);
             }
+        } else {
+            sendMessage("Use ::atb profile save NAME, ::atb profile NAME, ::atb profile delete NAME, ::atb profiles or ::atb misclicks");
         }
+    }
 
-        // Only process teleport-related menu clicks from here
-        if (!isTeleportSpellOption(target)) {
+    private void listProfiles() {
+        if (ruleStore.getProfileNames().isEmpty()) {
+            sendMessage("No profiles yet, save one with ::atb profile save NAME");
             return;
         }
 
-        // Handle our custom "Enable/Disable block" menu options
-        if (option.equals("Enable block") || option.equals("Disable block")) {
-            String teleport = getSpellNameFromTarget(target);
-            String baseTeleport = getBaseTeleportName(teleport);
+        String active = ruleStore.getActiveProfile();
+        sendMessage("Profiles: " + ruleStore.getProfileNames().stream()
+                .map(name -> name.equals(active) ? name + " (active)" : name)
+                .collect(Collectors.joining(", ")));
+    }
 
-            if (option.equals("Enable block")) {
-                blockTeleport(baseTeleport);
-            } else {
-                unblockTeleport(baseTeleport);
-            }
+    private void listMisclicks() {
+        List<Integer> pairs = misclicks.getTopPairs(LISTED_MISCLICKS);
 
-            saveBlockedTeleports();
-            event.consume();
+        if (pairs.isEmpty()) {
+            sendMessage("No misclicked teleports yet");
             return;
         }
 
-        if (event.getMenuAction() != MenuAction.CC_OP && event.getMenuAction() != MenuAction.CC_OP_LOW_PRIORITY) {
+        for (int pair : pairs) {
+            sendMessage(describeMisclicks(pair));
+        }
+    }
+
+    /**
+     * Suggests blocking a misclicked teleport through its shift right-click entry, unless it is blocked already.
+     *
+     * @param pair the suggestion of the {@link MisclickDetector}, or {@link MisclickDetector#NO_SUGGESTION}
+     */
+    private void suggestBlock(int pair) {
+        if (pair == MisclickDetector.NO_SUGGESTION) {
             return;
         }
 
-        // Don't process un-blocked teleports
-        if (!isBlockedTeleportTarget(target)) {
+        TeleportSpell teleport = misclicks.getTeleport(pair);
+
+        if (!policyEngine.getRules().isBlocked(teleport)) {
+            sendMessage(describeMisclicks(pair) + ". Shift right-click it and pick Enable block to block it.");
+        }
+    }
+
+    private String describeMisclicks(int pair) {
+        String teleport = misclicks.getTeleport(pair).getDisplayName();
+        String cause = misclicks.getCause(pair);
+        int count = misclicks.getCount(pair);
+        String times = count == 1 ? " once" : " " + count + " times";
+
+        return cause != null
+                ? "You misclicked " + teleport + times + " while casting " + cause
+                : "You teleported back right after " + teleport + times;
+    }
+
+    /**
+     * Starts or stops sharing the block lists to follow the config. Only call it from the client thread.
+     */
+    private void updateSharing() {
+        if (config.shareRulesBetweenClients() && sharedRules == null) {
+            try {
+                sharedRules = new SharedRuleFile(SHARED_RULES_FILE);
+            } catch (IOException e) {
+                sendMessage("Unable to share blocks: " + e.getMessage());
+                return;
+            }
+
+            // Clients that are sharing already have the say, the first one provides its own block lists
+            syncSharedRules();
+        } else if (!config.shareRulesBetweenClients()) {
+            stopSharing();
+        }
+    }
+
+    /**
+     * Adopts the block lists written by another client, or writes ours when they changed since the last
+     * write. Called every game tick, only reads the sequence number when nothing changed. Sharing stops when
+     * the block lists of another client can't be read for {@link #MAX_FAILED_SHARED_READS} ticks.
+     */
+    private void syncSharedRules() {
+        long sequence = sharedRules.getSequence();
+
+        if (sequence != sharedSequence) {
+            RuleSnapshot shared = sharedRules.read();
+
+            if (shared != null) {
+                adoptSharedRules(shared);
+                sharedSequence = sequence;
+                failedReads = 0;
+                return;
+            }
+
+            // Try again next tick while a write is under way, unless the same write failed to read for too long
+            failedReads = sequence == failedReadSequence ? failedReads + 1 : 1;
+            failedReadSequence = sequence;
+
+            if (failedReads < MAX_FAILED_SHARED_READS) {
+                return;
+            }
+
+            if ((sequence & 1) == 0) {
+                // Written by a newer version of the plugin, which would otherwise be decoded again every tick
+                sendMessage("Stopped sharing blocks, the blocks shared by another client can't be read. Update the plugin in all clients to share them again.");
+                stopSharing();
+                return;
+            }
+
+            // The writer crashed halfway, our own block lists replace the torn ones
+            lastSharedRules = null;
+        }
+
+        RuleSnapshot rules = policyEngine.getRules();
+
+        if (rules == lastSharedRules) {
             return;
         }
 
-        // Allow to right-click menu casting if configured
-        if (config.allowRightClickWithoutModifier() && client.isMenuOpen()) {
+        try {
+            sharedSequence = sharedRules.write(rules);
+            lastSharedRules = rules;
+            failedReads = 0;
+        } catch (IOException e) {
+            sendMessage("Stopped sharing blocks: " + e.getMessage());
+            stopSharing();
+        }
+    }
+
+    private void adoptSharedRules(RuleSnapshot shared) {
+        TriggerSpellList triggerSpells = policyEngine.getRules().getTriggerSpells();
+        lastSharedRules = policyEngine.update(rules -> rules.withBlockLists(shared));
+
+        // Stored as a whole, so the stored lists and the active profile never mix adopted and older lists
+        ruleStore.markBlockListsDirty();
+
+        // Open windows stay open unless the trigger ids changed
+        if (!shared.getTriggerSpells().format().equals(triggerSpells.format())) {
+            resetTriggers(shared.getTriggerSpells().size());
+        }
+
+        if (recorder.isRecording()) {
+            recorder.recordRulesChanged(lastSharedRules);
+        }
+    }
+
+    private void stopSharing() {
+        if (sharedRules == null) {
             return;
         }
 
-        boolean shouldBlock = false;
+        try {
+            sharedRules.close();
+        } catch (IOException ignored) {
+            // The rules were written through the mapping, there is nothing left to lose
+        }
 
-        if (config.enableCustomTriggerSpells()) {
-            if (lastCustomSpellCastAt != null) {
-                long sinceCustomSpell = Duration.between(lastCustomSpellCastAt, Instant.now()).getSeconds();
-                shouldBlock = sinceCustomSpell <= config.activationDelaySeconds();
-            }
+        sharedRules = null;
+        sharedSequence = SharedRuleFile.EMPTY;
+        lastSharedRules = null;
+        failedReads = 0;
+    }
+
+    private void saveProfile(String name) {
+        if (name.length() > MAX_PROFILE_NAME_LENGTH || name.contains(",")) {
+            sendMessage("Profile names can't contain commas or be longer than " + MAX_PROFILE_NAME_LENGTH + " characters");
+            return;
+        }
+
+        ruleStore.saveProfile(name, policyEngine.getRules());
+        sendMessage("Saved profile " + name);
+    }
+
+    /**
+     * Publishes the rules the profile was compiled to at load, nothing is parsed. Only call it from the client thread.
+     *
+     * @return whether there was such a profile
+     */
+    private boolean switchProfile(String name) {
+        RuleSnapshot rules = ruleStore.switchProfile(name, policyEngine.getRules());
+
+        if (rules == null) {
+            return false;
+        }
+
+        // Trigger ids belong to the old trigger list
+        policyEngine.publish(rules);
+        resetTriggers(rules.getTriggerSpells().size());
+
+        if (recorder.isRecording()) {
+            recorder.recordProfileSwitched(ruleStore.getActiveProfile(), rules);
+        }
+
+        sendMessage("Switched to profile " + ruleStore.getActiveProfile());
+        return true;
+    }
+
+    private void sendMessage(String message) {
+        client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", "ATB: " + message, null);
+    }
+
+    private void updateMetricsOverlay() {
+        if (config.showMetricsOverlay()) {
+            overlayManager.add(metricsOverlay);
         } else {
-            shouldBlock = true;
+            overlayManager.remove(metricsOverlay);
         }
+    }
+
+    /**
+     * Appends the metrics to the log on every interval from the config. Only call it from the client thread.
+     */
+    private void tickMetricsDump() {
+        int dumpMinutes = config.metricsDumpMinutes();
 
-        if (!shouldBlock) {
+        if (dumpMinutes <= 0 || ++ticksSinceMetricsDump < dumpMinutes * TICKS_PER_MINUTE) {
             return;
         }
 
-        // Early return if modifier key bypass is disabled
-        if (!config.enableModifierKey()) {
-            event.consume();
-            String blockedMessage = "ATB: This teleport is being blocked";
+        ticksSinceMetricsDump = 0;
+        String report = LocalDateTime.now().withNano(0) + System.lineSeparator() + metrics.format();
 
-            if (config.enableCustomTriggerSpells() && lastCustomSpellCastAt != null) {
-                long sinceCustomSpell = Duration.between(lastCustomSpellCastAt, Instant.now()).getSeconds();
-                long remainingCustomSpell = config.activationDelaySeconds() - sinceCustomSpell;
-
-                if (remainingCustomSpell >= 0) {
-                    blockedMessage += getSecondsMessage((int) remainingCustomSpell, "please wait");
-                }
+        executor.execute(() -> {
+            try {
+                appendMetricsLog(report);
+            } catch (IOException e) {
+                clientThread.invokeLater(() -> sendMessage("Unable to write the metrics log: " + e.getMessage()));
             }
+        });
+    }
 
-            blockedMessage += "!";
-            client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", blockedMessage, null);
+    private static void appendMetricsLog(String report) throws IOException {
+        if (!PLUGIN_DIR.isDirectory() && !PLUGIN_DIR.mkdirs()) {
+            throw new IOException("Unable to create " + PLUGIN_DIR);
+        }
 
-            return;
+        try (Writer writer = Files.newBufferedWriter(new File(PLUGIN_DIR, "metrics.log").toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(report);
         }
+    }
+
+    @Subscribe
+    public void onGameTick(GameTick event) {
+        if (misclicks.isLanding()) {
+            suggestBlock(misclicks.moved(getLocalPlayerLocation(), triggerWindows.getCurrentTick()));
+        }
+
+        // The tick's events came before this, so the casts they belong to can be confirmed
+        int trigger = castCorrelator.endTick(triggerWindows.getCurrentTick());
+
+        if (trigger != CastCorrelator.NO_CAST) {
+            metrics.countConfirmedCast();
 
-        boolean modifierHeld;
-        String keyName;
+            SpellIndex.Spell spell = castCorrelator.getConfirmedSpell();
 
-        switch (config.modifierKey()) {
-            case SHIFT:
-                modifierHeld = client.isKeyPressed(KeyCode.KC_SHIFT);
-                keyName = "SHIFT";
-                break;
-            case CTRL:
-            default:
-                modifierHeld = client.isKeyPressed(KeyCode.KC_CONTROL);
-                keyName = "CTRL";
-                break;
+            if (spell != null) {
+                suggestBlock(misclicks.cast(spell, castCorrelator.getConfirmedTick(),
+                        spell.isTeleport() ? getLocalPlayerLocation() : null));
+            }
+
+            if (trigger != SpellPatternMatcher.NO_MATCH) {
+                triggerWindows.open(trigger, policyEngine.getRules().getWindowTicks(trigger));
+                triggerProximity.opened(trigger, triggerWindows.getCurrentTick());
+                metrics.countTriggerWindowActivation();
+            }
         }
 
-        // Block the teleport if modifier key is not held
-        if (!modifierHeld) {
-            event.consume();
-            String blockedMessage = "ATB: Hold " + keyName + " to use this teleport";
+        metrics.countUnconfirmedCasts(castCorrelator.takeUnconfirmed());
+        triggerWindows.tick();
+        notifier.tick(triggerWindows.getCurrentTick(),
+                triggerWindows.isOpen() ? getRemainingSeconds(policyEngine.getRules()) : BlockNotifier.NO_COUNTDOWN);
+        ruleStore.tick(policyEngine.getRules());
 
-            if (config.enableCustomTriggerSpells() && lastCustomSpellCastAt != null) {
-                long sinceCustomSpell = Duration.between(lastCustomSpellCastAt, Instant.now()).getSeconds();
-                long remainingCustomSpell = config.activationDelaySeconds() - sinceCustomSpell;
+        if (sharedRules != null) {
+            syncSharedRules();
+        }
 
-                if (remainingCustomSpell >= 0) {
-                    blockedMessage += getSecondsMessage((int) remainingCustomSpell, "or wait");
-                }
+        if (recorder.isRecording()) {
+            recorder.recordTick();
+        }
+
+        tickMetricsDump();
+
+        String recordingError = recorder.takeError();
+
+        if (recordingError != null) {
+            sendMessage("Session recording stopped: " + recordingError);
+        }
+    }
+
+    @Subscribe
+    public void onGameStateChanged(GameStateChanged event) {
+        if (event.getGameState() == GameState.LOGGED_IN) {
+            int spellbook = client.getVarbitValue(Spellbook.VARBIT);
+
+            // Recorded first, the slots of the new spellbook are recorded once it is indexed
+            if (recorder.isRecording()) {
+                recorder.recordVarbitChanged(Spellbook.VARBIT, spellbook);
             }
 
-            blockedMessage += "!";
-            client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", blockedMessage, null);
+            updateSpellbook(spellbook);
+        } else if (event.getGameState() == GameState.LOGIN_SCREEN || event.getGameState() == GameState.HOPPING) {
+            // No more game ticks to flush on until logged in again
+            ruleStore.flush(policyEngine.getRules());
+            castCorrelator.reset();
         }
     }
 
     @Subscribe
-    public void onStatChanged(StatChanged event) {
-        // Check if a custom trigger spell was just cast and if any magic xp was gained (not 100% accurate but close enough)
-        if (pendingSpellName != null && event.getSkill() == Skill.MAGIC) {
-            if (isCustomTriggerSpell(pendingSpellName)) {
-                lastCustomSpellCastAt = Instant.now();
+    public void onVarbitChanged(VarbitChanged event) {
+        if (event.getVarbitId() == Spellbook.VARBIT) {
+            if (recorder.isRecording()) {
+                recorder.recordVarbitChanged(Spellbook.VARBIT, event.getValue());
             }
 
-            pendingSpellName = null;
+            updateSpellbook(event.getValue());
+        } else if (CastCorrelator.isRunePouchVarbit(event.getVarbitId())) {
+            castCorrelator.varbitChanged(event.getVarbitId(), event.getValue());
+
+            if (recorder.isRecording()) {
+                recorder.recordVarbitChanged(event.getVarbitId(), event.getValue());
+            }
         }
     }
 
-    private String getSecondsMessage(Integer remaining, String prefix) {
-        String secondsString = " seconds";
+    /**
+     * Indexes the loaded spellbook widgets, and records their slots when they changed while recording the session.
+     */
+    private void buildSpellIndex() {
+        if (spellIndex.build(client, currentSpellbook) && recorder.isRecording()) {
+            recorder.recordSpellbookSlots(spellIndex);
+        }
+    }
 
-        if (remaining <= 0) {
-            remaining = 1;
+    @Subscribe
+    public void onWidgetLoaded(WidgetLoaded event) {
+        if (event.getGroupId() == SpellIndex.SPELLBOOK_GROUP_ID) {
+            buildSpellIndex();
         }
+    }
 
-        if (remaining == 1) secondsString = " second";
+    /**
+     * The spellbook filters move the slots without loading the interface again, and so do level ups and running out
+     * of runes while spells that can't be cast are hidden. The spellbook is redrawn each time, so the positions are
+     * read again after that. Runs after other plugins, which may move the slots as well.
+     */
+    @Subscribe(priority = -1)
+    public void onScriptPostFired(ScriptPostFired event) {
+        if (event.getScriptId() == ScriptID.MAGIC_SPELLBOOK_REDRAW) {
+            buildSpellIndex();
+        }
+    }
 
-        return " " + prefix + " " + remaining + secondsString;
+    /**
+     * Resizing can move the spellbook slots, so their positions are read again.
+     */
+    @Subscribe
+    public void onCanvasSizeChanged(CanvasSizeChanged event) {
+        if (client.getGameState() == GameState.LOGGED_IN) {
+            buildSpellIndex();
+        }
     }
 
-    private boolean isTeleportSpellOption(String target) {
-        String tgt = target.toLowerCase().replaceAll("<.*?>", "").replaceAll("[^a-z ]", "").trim();
+    /**
+     * The spellbook interface is updated after the varbit changes, so the index is rebuilt later on the client
+     * thread. Until then spells are indexed from the menu targets.
+     */
+    private void updateSpellbook(int varbitValue) {
+        Spellbook spellbook = Spellbook.fromVarbit(varbitValue);
+
+        if (spellbook == currentSpellbook) {
+            return;
+        }
 
-        return tgt.contains("teleport") || tgt.contains("tele group");
+        currentSpellbook = spellbook;
+        selectedSpell = null;
+        spellIndex.reset(spellbook);
+        clientThread.invokeLater(this::buildSpellIndex);
     }
 
-    private String getSpellNameFromTarget(String target) {
-        return target.toLowerCase().replaceAll("<.*?>", "").replaceAll("[^a-z ]", "").trim();
+    @Subscribe
+    public void onMenuOpened(MenuOpened event) {
+        long start = System.nanoTime();
+        addBlockMenuEntries(event);
+        metrics.getMenuOpened().record(System.nanoTime() - start);
     }
 
-    private boolean isCustomTriggerSpell(String spellName) {
-        loadCustomTriggerSpells();
+    /**
+     * Adds the shift right-click entries to block teleports and item and object options, and to add or
+     * remove trigger spells.
+     */
+    private void addBlockMenuEntries(MenuOpened event) {
+        boolean shiftHeld = client.isKeyPressed(KeyCode.KC_SHIFT);
+
+        if (recorder.isRecording()) {
+            recorder.recordMenuOpened(event.getMenuEntries(), shiftHeld);
+        }
+
+        if (!shiftHeld) return;
 
-        return customTriggerSpells.stream().anyMatch(triggerSpell ->
-                spellName.contains(triggerSpell) || triggerSpell.contains(spellName)
-        );
+        RuleSnapshot rules = policyEngine.getRules();
+
+        // Scan the finished menu once, the entries added here are not part of this array
+        for (MenuEntry entry : event.getMenuEntries()) {
+            if (!"Cast".equals(entry.getOption())) {
+                addOptionBlockMenuEntry(rules, entry);
+                continue;
+            }
+
+            String target = entry.getTarget();
+            SpellIndex.Spell spell = spellIndex.resolve(client, entry.getParam1(), target);
+
+            if (spell == null) {
+                continue;
+            }
+
+            TeleportSpell teleport = spell.getTeleport();
+
+            if (teleport != null) { // Teleport spells
+                String menuText = rules.isBlocked(teleport) ? "Disable block" : "Enable block";
+
+                client.getMenu().createMenuEntry(-1)
+                        .setOption(menuText)
+                        .setTarget(target)
+                        .setType(MenuAction.RUNELITE)
+                        .onClick(teleportBlockToggles.get(teleport.ordinal()));
+            } else if (!spell.isTeleport()) { // All other spells
+                String spellName = spell.getName();
+                String menuText = rules.getTriggerSpells().contains(spellName) ? "Remove block trigger" : "Add block trigger";
+
+                client.getMenu().createMenuEntry(-1)
+                        .setOption(menuText)
+                        .setTarget(target)
+                        .setType(MenuAction.RUNELITE)
+                        .onClick(triggerSpellToggles.computeIfAbsent(spellName, triggerSpellToggleFactory));
+            }
+        }
     }
 
-    private String getCurrentSpellbook() {
-        int spellbookVar = client.getVarbitValue(4070); // Spellbook varbit from the game
+    private void addOptionBlockMenuEntry(RuleSnapshot rules, MenuEntry entry) {
+        MenuAction action = entry.getType();
+        int itemId = entry.getItemId();
+        OptionCategory category = OptionCategory.of(action, itemId, entry.getParam1());
 
-        switch (spellbookVar) {
-            case 1:
-                return ANCIENT_SPELLBOOK;
-            case 2:
-                return LUNAR_SPELLBOOK;
-            case 3:
-                return ARCEUUS_SPELLBOOK;
-            default:
-                return STANDARD_SPELLBOOK;
+        if (category == null) {
+            return;
         }
+
+        int key = OptionCategory.keyOf(action, entry.getIdentifier(), itemId);
+        boolean blocked = rules.isOptionBlocked(category, key);
+
+        if (key == OptionCategory.NO_KEY || !blocked && !isTeleportOption(category, entry)) {
+            return;
+        }
+
+        client.getMenu().createMenuEntry(-1)
+                .setOption(blocked ? "Disable block" : "Enable block")
+                .setTarget(entry.getOption() + " " + entry.getTarget())
+                .setType(MenuAction.RUNELITE)
+                .setIdentifier(key)
+                .onClick(optionBlockToggles.get(category.ordinal()));
     }
 
-    private boolean isBlockedTeleport(String baseTeleport) {
-        String currentSpellbook = getCurrentSpellbook();
-        Set<String> spellbookBlockedTeleports = blockedTeleportsPerSpellbook.get(currentSpellbook);
+    /**
+     * Whether an item or object option looks like it could teleport. Worn items only have teleport options
+     * besides Remove and Examine, the others are recognized by their name.
+     */
+    private boolean isTeleportOption(OptionCategory category, MenuEntry entry) {
+        String option = entry.getOption();
 
-        if (spellbookBlockedTeleports == null) {
-            return false;
+        if (category == OptionCategory.WORN) {
+            return !"Remove".equals(option) && !"Examine".equals(option);
         }
 
-        // Direct match
-        if (spellbookBlockedTeleports.contains(baseTeleport)) {
-            return true;
+        for (String prefix : TELEPORT_OPTION_PREFIXES) {
+            if (option.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                return true;
+            }
         }
 
-        // Grouped teleports
-        return TELEPORT_GROUPS.entrySet().stream()
-                .anyMatch(entry -> {
-                    boolean keyBlocked = spellbookBlockedTeleports.contains(entry.getKey());
-                    boolean containsTarget = entry.getValue().stream().anyMatch(baseTeleport::contains);
-                    return keyBlocked && containsTarget;
-                });
+        return false;
     }
 
-    private void blockTeleport(String baseTeleport) {
-        String currentSpellbook = getCurrentSpellbook();
-        Set<String> spellbookBlockedTeleports = blockedTeleportsPerSpellbook.get(currentSpellbook);
+    @Subscribe
+    public void onMenuOptionClicked(MenuOptionClicked event) {
+        long start = System.nanoTime();
+        BlockDecision decision = checkMenuOptionClicked(event);
+
+        // A blocked click never reaches the game, so it can't replace a cast that is under way
+        if (!decision.isBlocked() && "Cast".equals(event.getMenuOption())) {
+            addCast(event);
+        }
+
+        metrics.getMenuOptionClicked().record(System.nanoTime() - start);
+        metrics.countDecision(decision);
+
+        if (recorder.isRecording()) {
+            int keyState = (client.isKeyPressed(KeyCode.KC_SHIFT) ? SessionRecorder.SHIFT_HELD : 0)
+                    | (client.isKeyPressed(KeyCode.KC_CONTROL) ? SessionRecorder.CTRL_HELD : 0)
+                    | (client.isMenuOpen() ? SessionRecorder.MENU_OPEN : 0);
+
+            recorder.recordClick(event.getMenuEntry(), keyState, decision);
+        }
+    }
+
+    /**
+     * Blocks the click if needed, and returns the decision.
+     */
+    private BlockDecision checkMenuOptionClicked(MenuOptionClicked event) {
+        SpellIndex.Spell spell = spellIndex.resolve(client, event.getParam1(), event.getMenuTarget());
+
+        // Item and object options are looked up by id, teleport spells come from widget ops
+        MenuAction action = event.getMenuAction();
+        OptionCategory optionCategory = OptionCategory.of(action, event.getItemId(), event.getParam1());
+        int optionKey = optionCategory != null ? OptionCategory.keyOf(action, event.getId(), event.getItemId()) : OptionCategory.NO_KEY;
+        TeleportSpell teleport = null;
 
-        if (spellbookBlockedTeleports != null) {
-            spellbookBlockedTeleports.add(baseTeleport);
+        if (spell != null && (action == MenuAction.CC_OP || action == MenuAction.CC_OP_LOW_PRIORITY)) {
+            teleport = spell.getTeleport();
         }
+
+        if (teleport == null && optionCategory == null) {
+            return BlockDecision.ALLOW_NOT_TELEPORT;
+        }
+
+        RuleSnapshot rules = policyEngine.getRules();
+        BlockDecision decision = BlockPolicyEngine.decide(rules, blockInput.set(
+                teleport,
+                optionCategory,
+                optionKey,
+                client.isKeyPressed(KeyCode.KC_SHIFT),
+                client.isKeyPressed(KeyCode.KC_CONTROL),
+                client.isMenuOpen(),
+                triggerWindows.isOpen(),
+                teleport != null ? triggerProximity.distanceTo(spellIndex, spell) : BlockInput.UNKNOWN_DISTANCE,
+                triggerProximity.ticksSince(triggerWindows.getCurrentTick())));
+
+        if (!decision.isBlocked()) {
+            return decision;
+        }
+
+        event.consume();
+
+        notifier.blocked(teleport != null ? BlockNotifier.keyOf(teleport) : BlockNotifier.keyOf(optionCategory, optionKey),
+                decision, rules.getModifierKey(), getRemainingSeconds(rules), triggerWindows.getCurrentTick());
+
+        return decision;
     }
 
-    private void unblockTeleport(String baseTeleport) {
-        String currentSpellbook = getCurrentSpellbook();
-        Set<String> spellbookBlockedTeleports = blockedTeleportsPerSpellbook.get(currentSpellbook);
+    /**
+     * Buffers an allowed cast click until the effects of the cast confirm it, which then opens a trigger window
+     * or is checked for misclicks.
+     */
+    private void addCast(MenuOptionClicked event) {
+        SpellIndex.Spell spell = spellIndex.resolve(client, event.getParam1(), event.getMenuTarget());
 
-        if (spellbookBlockedTeleports != null) {
-            spellbookBlockedTeleports.remove(baseTeleport);
+        if (spell != null) {
+            selectedSpell = spell;
         }
+
+        RuleSnapshot rules = policyEngine.getRules();
+        int trigger = SpellPatternMatcher.NO_MATCH;
+
+        if (rules.isTriggerSpellsEnabled()) {
+            // Spells cast on something else than the spellbook, like alchemy on an item, are named by the target
+            String target = spell != null ? spell.getName() : event.getMenuTarget();
+
+            trigger = target != null ? castTriggers.get(rules, target) : SpellPatternMatcher.NO_MATCH;
+
+            if (spell != null && trigger != SpellPatternMatcher.NO_MATCH) {
+                triggerProximity.clicked(spell, trigger);
+            }
+        }
+
+        castCorrelator.addCast(trigger, selectedSpell, triggerWindows.getCurrentTick());
     }
 
-    private boolean isBlockedTeleportTarget(String target) {
-        String lowerTarget = target.toLowerCase().replaceAll("<.*?>", "").replaceAll("[^a-z ]", "").trim();
-        String baseTeleport = getBaseTeleportName(lowerTarget);
-        String currentSpellbook = getCurrentSpellbook();
-        Set<String> spellbookBlockedTeleports = blockedTeleportsPerSpellbook.get(currentSpellbook);
+    private WorldPoint getLocalPlayerLocation() {
+        Player player = client.getLocalPlayer();
+        return player != null ? player.getWorldLocation() : null;
+    }
 
-        if (spellbookBlockedTeleports == null) {
-            return false;
+    @Subscribe
+    public void onStatChanged(StatChanged event) {
+        if (recorder.isRecording()) {
+            recorder.recordStatChanged(event.getSkill(), event.getXp());
+        }
+
+        if (event.getSkill() == Skill.MAGIC) {
+            castCorrelator.magicXpChanged(event.getXp());
+        }
+    }
+
+    @Subscribe
+    public void onAnimationChanged(AnimationChanged event) {
+        Actor actor = event.getActor();
+
+        if (actor == null || actor != client.getLocalPlayer()) {
+            return;
+        }
+
+        if (recorder.isRecording()) {
+            recorder.recordAnimationChanged(actor.getAnimation());
+        }
+
+        if (actor.getAnimation() != -1) {
+            castCorrelator.localPlayerAnimated();
+        }
+    }
+
+    @Subscribe
+    public void onGraphicChanged(GraphicChanged event) {
+        Actor actor = event.getActor();
+
+        if (actor == null || actor != client.getLocalPlayer()) {
+            return;
+        }
+
+        if (recorder.isRecording()) {
+            recorder.recordGraphicChanged(actor.getGraphic());
+        }
+
+        if (actor.getGraphic() != -1) {
+            castCorrelator.localPlayerGraphic();
         }
+    }
+
+    @Subscribe
+    public void onItemContainerChanged(ItemContainerChanged event) {
+        if (event.getContainerId() != InventoryID.INVENTORY.getId()) {
+            return;
+        }
+
+        Item[] items = event.getItemContainer().getItems();
 
-        // Check direct match
-        if (spellbookBlockedTeleports.contains(baseTeleport)) {
-            return true;
+        if (recorder.isRecording()) {
+            recorder.recordInventoryChanged(items);
         }
 
-        // Check grouped teleports
-        return TELEPORT_GROUPS.entrySet().stream()
-                .anyMatch(entry -> {
-                    boolean keyBlocked = spellbookBlockedTeleports.contains(entry.getKey());
-                    boolean containsTarget = entry.getValue().stream().anyMatch(lowerTarget::contains);
-                    return keyBlocked && containsTarget;
-                });
+        castCorrelator.inventoryChanged(items);
+    }
+
+    /**
+     * Seconds until teleports are no longer blocked by a trigger window, for the block notifications.
+     */
+    private int getRemainingSeconds(RuleSnapshot rules) {
+        return rules.isTriggerSpellsEnabled() ? Math.max(1, triggerWindows.getRemainingSeconds()) : BlockNotifier.NO_COUNTDOWN;
+    }
+
+    private void toggleBlockedTeleport(TeleportSpell teleport) {
+        policyEngine.update(rules -> rules.withTeleportBlocked(teleport, !rules.isBlocked(teleport)));
+        ruleStore.markBlockedTeleportsDirty(teleport.getSpellbook());
+    }
+
+    private void toggleBlockedOption(OptionCategory category, int key) {
+        policyEngine.update(rules -> rules.withOptionBlocked(category, key, !rules.isOptionBlocked(category, key)));
+        ruleStore.markBlockedOptionsDirty(category);
+    }
+
+    private Consumer<MenuEntry> createTriggerSpellToggle(String spellName) {
+        return e -> {
+            if (policyEngine.getRules().getTriggerSpells().contains(spellName)) {
+                removeFromCustomTriggerSpells(spellName);
+            } else {
+                addToCustomTriggerSpells(spellName);
+            }
+        };
     }
 
     @Provides
@@ -431,17 +1103,13 @@ public class AccidentalTeleportBlockerPlugin extends Plugin {
 
     private void addToCustomTriggerSpells(String spellName) {
         // Ignore empty or duplicate entries
-        if (spellName == null || spellName.trim().isEmpty() || customTriggerSpells.contains(spellName)) {
+        TriggerSpellList spells = policyEngine.getRules().getTriggerSpells();
+
+        if (spellName == null || spellName.trim().isEmpty() || spells.contains(spellName)) {
             return;
         }
 
-        customTriggerSpells.add(spellName.trim().toLowerCase());
-
-        // Sort the spells alphabetically and update the configuration
-        String updatedSpellList = customTriggerSpells.stream()
-                .sorted()
-                .collect(java.util.stream.Collectors.joining(", "));
-        configManager.setConfiguration("AccidentalTeleportBlocker", "customTriggerSpells", updatedSpellList);
+        saveCustomTriggerSpells(spells.with(spellName.trim().toLowerCase()));
     }
 
     private void removeFromCustomTriggerSpells(String spellName) {
@@ -450,12 +1118,12 @@ public class AccidentalTeleportBlockerPlugin extends Plugin {
             return;
         }
 
-        customTriggerSpells.remove(spellName.trim().toLowerCase());
+        saveCustomTriggerSpells(policyEngine.getRules().getTriggerSpells().without(spellName.trim().toLowerCase()));
+    }
 
-        // Sort the spells alphabetically and update the configuration
-        String updatedSpellList = customTriggerSpells.stream()
-                .sorted()
-                .collect(java.util.stream.Collectors.joining(", "));
-        configManager.setConfiguration("AccidentalTeleportBlocker", "customTriggerSpells", updatedSpellList);
+    private void saveCustomTriggerSpells(TriggerSpellList spells) {
+        // Publish right away, the ConfigChanged event for the deferred write will produce the same snapshot
+        publishCustomTriggerSpells(spells);
+        ruleStore.markTriggerSpellsDirty();
     }
 }
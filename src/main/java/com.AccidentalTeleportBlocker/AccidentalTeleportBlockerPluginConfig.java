@@ -7,6 +7,8 @@ public interface AccidentalTeleportBlockerPluginConfig extends Config
 {
     enum ModifierKey { CTRL, SHIFT }
 
+    enum NotificationStyle { CHAT, OVERLAY, SOUND, INFOBOX, NONE }
+
 
 
     // ─────────────────────── General Settings ───────────────────────
@@ -88,7 +90,7 @@ public interface AccidentalTeleportBlockerPluginConfig extends Config
     @ConfigItem(
             keyName = "customTriggerSpells",
             name = "Spell list",
-            description = "Comma-separated list of spell names that will trigger the block delay window. Can also be modified through the spellbook shift + right-click menu.",
+            description = "Comma-separated list of spell names that will trigger the block delay window. Add a window in ticks or seconds to a spell to override the unblock delay, e.g. high level alchemy:3t, vengeance:10s, up to 1023 ticks or 613 seconds. Can also be modified through the spellbook shift + right-click menu.",
             section = activationSection,
             position = 2
     )
@@ -104,4 +106,152 @@ public interface AccidentalTeleportBlockerPluginConfig extends Config
             position = 3
     )
     default int activationDelaySeconds() { return 5; }
+
+    @Range(min = 0, max = 1000)
+    @Units(Units.TICKS)
+    @ConfigItem(
+            keyName = "activationDelayTicks",
+            name = "Unblock delay (ticks)",
+            description = "How many game ticks should teleports be blocked for after a cast? Overrides the delay in seconds when above 0.",
+            section = activationSection,
+            position = 4
+    )
+    default int activationDelayTicks() { return 0; }
+
+    @Range(min = 0, max = 200)
+    @Units(Units.PIXELS)
+    @ConfigItem(
+            keyName = "triggerProximityPixels",
+            name = "Only block near the spell",
+            description = "When above 0, a trigger spell only blocks the teleports within this many pixels of its slot in the spellbook, the ones that get misclicked. 0 blocks teleports anywhere in the spellbook.",
+            section = activationSection,
+            position = 5
+    )
+    default int triggerProximityPixels() { return 0; }
+
+    @Range(min = 0, max = 100)
+    @Units(Units.TICKS)
+    @ConfigItem(
+            keyName = "triggerProximityTicks",
+            name = "Block anywhere for",
+            description = "When only blocking near the spell, teleports anywhere in the spellbook are still blocked for this many game ticks after the spell was cast.",
+            section = activationSection,
+            position = 6
+    )
+    default int triggerProximityTicks() { return 0; }
+
+    // ─────────────────────── Profiles ───────────────────────
+    @ConfigSection(
+            name = "Profiles",
+            description = "Switch between named sets of blocks and settings",
+            position = 2
+    )
+    String profilesSection = "profiles";
+
+    @ConfigItem(
+            keyName = "",
+            name = "<html><div style='width:171px; text-align:center; color: white'>"
+                    + "Type ::atb profile save NAME to save the current blocks and settings as a profile, "
+                    + "::atb profile NAME to switch to it and ::atb profiles to list them.<br>"
+                    + "</div></html>",
+            description = "",
+            position = 0,
+            section = profilesSection
+    )
+    default void profilesExplanationLabel() {
+    }
+
+    @ConfigItem(
+            keyName = "nextProfileHotkey",
+            name = "Next profile hotkey",
+            description = "Switches to the next profile",
+            section = profilesSection,
+            position = 1
+    )
+    default Keybind nextProfileHotkey() { return Keybind.NOT_SET; }
+
+    @ConfigItem(
+            keyName = "shareRulesBetweenClients",
+            name = "Share blocks between clients",
+            description = "Keeps the blocked teleports, options and trigger spells the same in all clients on this computer that have this on, through a shared file in .runelite/accidental-teleport-blocker. Settings stay per client.",
+            section = profilesSection,
+            position = 2
+    )
+    default boolean shareRulesBetweenClients() { return false; }
+
+    // ─────────────────────── Notifications ───────────────────────
+    @ConfigSection(
+            name = "Notifications",
+            description = "How blocked clicks are shown",
+            position = 3
+    )
+    String notificationsSection = "notifications";
+
+    @ConfigItem(
+            keyName = "notificationStyle",
+            name = "Notify blocks with",
+            description = "Show blocked clicks as a chat message, a flash at the top of the screen, a sound, or an infobox counting down the block.",
+            section = notificationsSection,
+            position = 0
+    )
+    default NotificationStyle notificationStyle() { return NotificationStyle.CHAT; }
+
+    @Range(min = 0, max = 100)
+    @Units(Units.TICKS)
+    @ConfigItem(
+            keyName = "notificationCoalesceTicks",
+            name = "Combine repeats within",
+            description = "Repeated blocks of the same teleport within this many game ticks are shown once, followed by how often it was blocked. 0 shows every blocked click.",
+            section = notificationsSection,
+            position = 1
+    )
+    default int notificationCoalesceTicks() { return 5; }
+
+    @Range(min = 0, max = 100)
+    @ConfigItem(
+            keyName = "suggestBlocksAfter",
+            name = "Suggest blocks after",
+            description = "Suggests blocking a teleport after it was misclicked this many times: cast right after a spell next to it in the spellbook, or right before teleporting back. 0 turns suggestions off. Type ::atb misclicks to list them.",
+            section = notificationsSection,
+            position = 2
+    )
+    default int suggestBlocksAfter() { return 0; }
+
+    // ─────────────────────── Debugging ───────────────────────
+    @ConfigSection(
+            name = "Debugging",
+            description = "Settings to help track down problems",
+            position = 4,
+            closedByDefault = true
+    )
+    String debuggingSection = "debugging";
+
+    @ConfigItem(
+            keyName = "recordSessions",
+            name = "Record sessions",
+            description = "Records menus, clicks and block decisions to .runelite/accidental-teleport-blocker, so a session can be replayed outside the game.",
+            section = debuggingSection,
+            position = 0
+    )
+    default boolean recordSessions() { return false; }
+
+    @ConfigItem(
+            keyName = "showMetricsOverlay",
+            name = "Show metrics",
+            description = "Shows how long the plugin takes to handle menus and clicks, and what it decided.",
+            section = debuggingSection,
+            position = 1
+    )
+    default boolean showMetricsOverlay() { return false; }
+
+    @Range(min = 0, max = 1440)
+    @Units(Units.MINUTES)
+    @ConfigItem(
+            keyName = "metricsDumpMinutes",
+            name = "Log metrics every",
+            description = "Appends the metrics to .runelite/accidental-teleport-blocker/metrics.log while logged in. 0 turns it off.",
+            section = debuggingSection,
+            position = 2
+    )
+    default int metricsDumpMinutes() { return 0; }
 }
@@ -0,0 +1,32 @@
+package com.AccidentalTeleportBlocker;
+
+/**
+ * Outcome of a {@link BlockPolicyEngine} check, together with the reason for it.
+ */
+enum BlockDecision {
+    ALLOW_NOT_TELEPORT(false, "Not a blockable teleport"),
+    ALLOW_NOT_BLOCKED(false, "Teleport is not blocked"),
+    ALLOW_RIGHT_CLICK(false, "Right-click casting is allowed"),
+    ALLOW_NO_TRIGGER(false, "No trigger spell was cast recently"),
+    ALLOW_MODIFIER(false, "Modifier key is held"),
+    BLOCK(true, "Teleport is blocked"),
+    BLOCK_MODIFIER_REQUIRED(true, "Modifier key is not held"),
+    // Recordings store the ordinal, new decisions go last
+    ALLOW_FAR_FROM_TRIGGER(false, "Teleport is not near the trigger spell");
+
+    private final boolean blocked;
+    private final String reason;
+
+    BlockDecision(boolean blocked, String reason) {
+        this.blocked = blocked;
+        this.reason = reason;
+    }
+
+    boolean isBlocked() {
+        return blocked;
+    }
+
+    String getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,53 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.client.ui.overlay.OverlayPanel;
+import net.runelite.client.ui.overlay.OverlayPosition;
+import net.runelite.client.ui.overlay.components.TitleComponent;
+
+import javax.inject.Inject;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+
+/**
+ * Flashes the block message at the top of the screen, for players who notify blocks with an overlay
+ * instead of chat messages. Shown and hidden by {@link BlockNotifier}.
+ */
+class BlockFlashOverlay extends OverlayPanel {
+
+    private static final Color FLASH_COLOR = new Color(140, 0, 0, 180);
+
+    private String message;
+
+    @Inject
+    BlockFlashOverlay() {
+        setPosition(OverlayPosition.TOP_CENTER);
+        panelComponent.setBackgroundColor(FLASH_COLOR);
+    }
+
+    void flash(String message) {
+        this.message = message;
+    }
+
+    void hide() {
+        message = null;
+    }
+
+    boolean isFlashing() {
+        return message != null;
+    }
+
+    @Override
+    public Dimension render(Graphics2D graphics) {
+        if (message == null) {
+            return null;
+        }
+
+        panelComponent.getChildren().add(TitleComponent.builder()
+                .text(message)
+                .color(Color.WHITE)
+                .build());
+
+        return super.render(graphics);
+    }
+}
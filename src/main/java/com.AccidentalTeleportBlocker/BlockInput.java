@@ -0,0 +1,43 @@
+package com.AccidentalTeleportBlocker;
+
+/**
+ * Client state needed for a single {@link BlockPolicyEngine} check.
+ * <p>
+ * Mutable so the client thread can fill in and reuse one instance for every click instead of
+ * allocating a new one. The spellbook is the one of the teleport itself. A clicked item or object option
+ * is passed as its {@link OptionCategory} and key, the category is null for all other menu entries.
+ * The distance to the trigger spell is measured between the spellbook slots of the teleport and of the
+ * trigger spell that opened the last window.
+ */
+final class BlockInput {
+
+    /**
+     * Trigger distance when the slot of the teleport or of the trigger spell is not known
+     */
+    static final int UNKNOWN_DISTANCE = -1;
+
+    TeleportSpell teleport;
+    OptionCategory optionCategory;
+    int optionKey;
+    boolean shiftHeld;
+    boolean ctrlHeld;
+    boolean menuOpen;
+    boolean triggerWindowOpen;
+    int triggerDistance;
+    int ticksSinceTrigger;
+
+    BlockInput set(TeleportSpell teleport, OptionCategory optionCategory, int optionKey,
+                   boolean shiftHeld, boolean ctrlHeld, boolean menuOpen, boolean triggerWindowOpen,
+                   int triggerDistance, int ticksSinceTrigger) {
+        this.teleport = teleport;
+        this.optionCategory = optionCategory;
+        this.optionKey = optionKey;
+        this.shiftHeld = shiftHeld;
+        this.ctrlHeld = ctrlHeld;
+        this.menuOpen = menuOpen;
+        this.triggerWindowOpen = triggerWindowOpen;
+        this.triggerDistance = triggerDistance;
+        this.ticksSinceTrigger = ticksSinceTrigger;
+        return this;
+    }
+}
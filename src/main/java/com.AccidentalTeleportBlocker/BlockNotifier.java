@@ -0,0 +1,347 @@
+package com.AccidentalTeleportBlocker;
+
+import com.AccidentalTeleportBlocker.AccidentalTeleportBlockerPluginConfig.ModifierKey;
+import com.AccidentalTeleportBlocker.AccidentalTeleportBlockerPluginConfig.NotificationStyle;
+import net.runelite.api.ChatMessageType;
+import net.runelite.api.Client;
+import net.runelite.api.SoundEffectID;
+import net.runelite.client.game.ItemManager;
+import net.runelite.client.plugins.Plugin;
+import net.runelite.client.ui.overlay.OverlayManager;
+import net.runelite.client.ui.overlay.infobox.InfoBox;
+import net.runelite.client.ui.overlay.infobox.InfoBoxManager;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * Tells the player a click was blocked, without flooding the chat when a blocked teleport is clicked over
+ * and over.
+ * <p>
+ * The first block of a teleport or option is shown right away. Repeats within the coalescing window are
+ * only counted, and when the window ends with repeats the count is shown once ("blocked x5") and a new
+ * window starts. Spam-clicking a teleport shows at most one notification per window, other teleports
+ * have windows of their own. Messages come from templates built once per block reason, modifier key and
+ * remaining seconds, so a blocked click doesn't build strings.
+ * <p>
+ * Not thread-safe, only use it from the client thread.
+ */
+@Singleton
+class BlockNotifier {
+
+    /**
+     * Remaining seconds when teleports are blocked without a trigger window counting down
+     */
+    static final int NO_COUNTDOWN = 0;
+
+    private static final int MAX_SECONDS = TriggerSpellList.ticksToSeconds(TriggerWindowTimer.MAX_WINDOW_TICKS);
+    private static final int MAX_REPEATS = 999;
+
+    // Message kinds, the first index of the message templates
+    private static final int BLOCKED = 0;
+    private static final int HOLD_SHIFT = 1;
+    private static final int HOLD_CTRL = 2;
+
+    // Teleports and options blocked within their window at the same time
+    private static final int SLOTS = 16;
+    private static final long FREE = -1L;
+
+    private static final int INFOBOX_MIN_TICKS = 5;
+    private static final int FLASH_TICKS = 2;
+    private static final int LAW_RUNE_ID = 563; // Item id from the game, the infobox image
+
+    private final Client client;
+    private final OverlayManager overlayManager;
+    private final InfoBoxManager infoBoxManager;
+    private final ItemManager itemManager;
+    private final BlockFlashOverlay flashOverlay;
+
+    private final String[][] messages = new String[3][MAX_SECONDS + 1];
+    private final String[] repeatMessages = new String[MAX_REPEATS + 1];
+    private final String[] countdownTexts = new String[MAX_SECONDS + 1];
+    private final String[] countTexts = new String[MAX_REPEATS + 1];
+
+    private final long[] slotKeys = new long[SLOTS];
+    private final int[] slotEnds = new int[SLOTS];
+    private final int[] slotRepeats = new int[SLOTS];
+
+    private Plugin plugin;
+    private NotificationStyle style = NotificationStyle.CHAT;
+    private int coalesceTicks;
+
+    private int flashEnd;
+
+    private BlockInfoBox infoBox;
+    private int infoBoxEnd;
+    private int infoBoxBlocks;
+    private String infoBoxText = "";
+    private String infoBoxTooltip = "";
+
+    @Inject
+    BlockNotifier(Client client, OverlayManager overlayManager, InfoBoxManager infoBoxManager, ItemManager itemManager,
+                  BlockFlashOverlay flashOverlay) {
+        this.client = client;
+        this.overlayManager = overlayManager;
+        this.infoBoxManager = infoBoxManager;
+        this.itemManager = itemManager;
+        this.flashOverlay = flashOverlay;
+        Arrays.fill(slotKeys, FREE);
+    }
+
+    /**
+     * Key of a blocked teleport spell, repeats of the same key are coalesced.
+     */
+    static long keyOf(TeleportSpell teleport) {
+        return teleport.ordinal();
+    }
+
+    /**
+     * Key of a blocked item or object option, see {@link OptionCategory#keyOf}.
+     */
+    static long keyOf(OptionCategory category, int optionKey) {
+        return (long) (category.ordinal() + 1) << 32 | (optionKey & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param plugin owner of the infobox
+     */
+    void start(Plugin plugin, NotificationStyle style, int coalesceTicks) {
+        this.plugin = plugin;
+        configure(style, coalesceTicks);
+    }
+
+    void configure(NotificationStyle style, int coalesceTicks) {
+        hideNotifications();
+        Arrays.fill(slotKeys, FREE);
+
+        this.style = style;
+        this.coalesceTicks = coalesceTicks;
+
+        if (style == NotificationStyle.OVERLAY) {
+            overlayManager.add(flashOverlay);
+        } else {
+            overlayManager.remove(flashOverlay);
+        }
+    }
+
+    void stop() {
+        hideNotifications();
+        overlayManager.remove(flashOverlay);
+        Arrays.fill(slotKeys, FREE);
+        plugin = null;
+    }
+
+    /**
+     * Notifies a blocked click, unless the same key was notified within the coalescing window.
+     *
+     * @param remainingSeconds seconds until the trigger window closes, or {@link #NO_COUNTDOWN}
+     */
+    void blocked(long key, BlockDecision decision, ModifierKey modifierKey, int remainingSeconds, int tick) {
+        if (style == NotificationStyle.NONE) {
+            return;
+        }
+
+        if (infoBox != null) {
+            infoBoxBlocks++;
+        }
+
+        int slot = coalesceTicks > 0 ? slotOf(key) : -1;
+
+        if (slot != -1) {
+            slotRepeats[slot] = Math.min(slotRepeats[slot] + 1, MAX_REPEATS);
+            return;
+        }
+
+        int kind = decision == BlockDecision.BLOCK ? BLOCKED : modifierKey == ModifierKey.SHIFT ? HOLD_SHIFT : HOLD_CTRL;
+        show(message(kind, Math.min(remainingSeconds, MAX_SECONDS)), true, tick);
+
+        if (coalesceTicks > 0) {
+            slot = freeSlot();
+            slotKeys[slot] = key;
+            slotEnds[slot] = tick + coalesceTicks;
+            slotRepeats[slot] = 0;
+        }
+    }
+
+    /**
+     * Shows the counts of the coalescing windows that ended, and hides notifications that are shown long enough.
+     *
+     * @param remainingSeconds seconds until the trigger window closes, or {@link #NO_COUNTDOWN}
+     */
+    void tick(int tick, int remainingSeconds) {
+        for (int i = 0; i < SLOTS; i++) {
+            if (slotKeys[i] == FREE || tick < slotEnds[i]) {
+                continue;
+            }
+
+            if (slotRepeats[i] > 0) {
+                show(repeatMessage(slotRepeats[i]), false, tick);
+                slotEnds[i] = tick + coalesceTicks;
+                slotRepeats[i] = 0;
+            } else {
+                slotKeys[i] = FREE;
+            }
+        }
+
+        if (flashOverlay.isFlashing() && tick >= flashEnd) {
+            flashOverlay.hide();
+        }
+
+        if (infoBox != null) {
+            if (remainingSeconds == NO_COUNTDOWN && tick >= infoBoxEnd) {
+                hideInfoBox();
+            } else {
+                updateInfoBoxText(remainingSeconds);
+            }
+        }
+    }
+
+    private void show(String message, boolean first, int tick) {
+        switch (style) {
+            case CHAT:
+                client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", message, null);
+                break;
+            case OVERLAY:
+                flashOverlay.flash(message);
+                flashEnd = tick + FLASH_TICKS;
+                break;
+            case SOUND:
+                // The count of a coalesced burst would only be another beep
+                if (first) {
+                    client.playSoundEffect(SoundEffectID.UI_BOOP);
+                }
+                break;
+            case INFOBOX:
+                showInfoBox(message, tick);
+                break;
+            case NONE:
+                break;
+        }
+    }
+
+    private void showInfoBox(String message, int tick) {
+        if (infoBox == null) {
+            infoBoxBlocks = 1;
+            infoBox = new BlockInfoBox();
+            infoBoxManager.addInfoBox(infoBox);
+        }
+
+        infoBoxTooltip = message;
+        infoBoxEnd = tick + Math.max(coalesceTicks, INFOBOX_MIN_TICKS);
+        updateInfoBoxText(NO_COUNTDOWN);
+    }
+
+    private void updateInfoBoxText(int remainingSeconds) {
+        infoBoxText = remainingSeconds != NO_COUNTDOWN
+                ? cached(countdownTexts, Math.min(remainingSeconds, MAX_SECONDS), "", "s")
+                : cached(countTexts, Math.min(infoBoxBlocks, MAX_REPEATS), "x", "");
+    }
+
+    private void hideInfoBox() {
+        if (infoBox != null) {
+            infoBoxManager.removeInfoBox(infoBox);
+            infoBox = null;
+        }
+
+        infoBoxBlocks = 0;
+    }
+
+    private void hideNotifications() {
+        flashOverlay.hide();
+        hideInfoBox();
+    }
+
+    private int slotOf(long key) {
+        for (int i = 0; i < SLOTS; i++) {
+            if (slotKeys[i] == key) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * A free slot, or the slot whose window ends first when all are in use. Its count is dropped.
+     */
+    private int freeSlot() {
+        int first = 0;
+
+        for (int i = 0; i < SLOTS; i++) {
+            if (slotKeys[i] == FREE) {
+                return i;
+            }
+
+            if (slotEnds[i] < slotEnds[first]) {
+                first = i;
+            }
+        }
+
+        return first;
+    }
+
+    private String message(int kind, int seconds) {
+        String message = messages[kind][seconds];
+
+        if (message == null) {
+            message = buildMessage(kind, seconds);
+            messages[kind][seconds] = message;
+        }
+
+        return message;
+    }
+
+    private static String buildMessage(int kind, int seconds) {
+        String message = kind == BLOCKED
+                ? "ATB: This teleport is being blocked"
+                : "ATB: Hold " + (kind == HOLD_SHIFT ? "SHIFT" : "CTRL") + " to use this teleport";
+
+        if (seconds != NO_COUNTDOWN) {
+            message += (kind == BLOCKED ? " please wait " : " or wait ") + seconds + (seconds == 1 ? " second" : " seconds");
+        }
+
+        return message + "!";
+    }
+
+    private String repeatMessage(int repeats) {
+        return cached(repeatMessages, repeats, "ATB: Blocked x", repeats == MAX_REPEATS ? "+ more!" : " more!");
+    }
+
+    private static String cached(String[] cache, int value, String prefix, String suffix) {
+        String text = cache[value];
+
+        if (text == null) {
+            text = prefix + value + suffix;
+            cache[value] = text;
+        }
+
+        return text;
+    }
+
+    /**
+     * Counts down the trigger window, or counts the blocks when there is no window.
+     */
+    private final class BlockInfoBox extends InfoBox {
+
+        private BlockInfoBox() {
+            super(itemManager.getImage(LAW_RUNE_ID), plugin);
+        }
+
+        @Override
+        public String getText() {
+            return infoBoxText;
+        }
+
+        @Override
+        public Color getTextColor() {
+            return Color.RED;
+        }
+
+        @Override
+        public String getTooltip() {
+            return infoBoxTooltip;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.AccidentalTeleportBlocker;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Decides whether a teleport click is blocked.
+ * <p>
+ * The engine does not depend on the game client: all client state is passed in through a
+ * {@link BlockInput}, and the rules come from an immutable {@link RuleSnapshot} published through an
+ * {@link AtomicReference}. Config and menu changes, possibly from other threads, publish a new snapshot,
+ * while a click is decided against the current one. Deciding never locks or allocates.
+ */
+final class BlockPolicyEngine {
+
+    private final AtomicReference<RuleSnapshot> rules = new AtomicReference<>(RuleSnapshot.EMPTY);
+
+    RuleSnapshot getRules() {
+        return rules.get();
+    }
+
+    void publish(RuleSnapshot snapshot) {
+        rules.set(snapshot);
+    }
+
+    /**
+     * Atomically replaces the snapshot with an updated copy of it, and returns the new snapshot.
+     */
+    RuleSnapshot update(UnaryOperator<RuleSnapshot> update) {
+        return rules.updateAndGet(update);
+    }
+
+    static BlockDecision decide(RuleSnapshot rules, BlockInput input) {
+        // Item and object options are only known to teleport once they are blocked
+        boolean optionBlocked = input.optionCategory != null && rules.isOptionBlocked(input.optionCategory, input.optionKey);
+
+        if (!optionBlocked) {
+            if (input.teleport == null) {
+                return BlockDecision.ALLOW_NOT_TELEPORT;
+            }
+
+            // Don't process un-blocked teleports
+            if (!rules.isBlocked(input.teleport)) {
+                return BlockDecision.ALLOW_NOT_BLOCKED;
+            }
+        }
+
+        // Allow to right-click menu casting if configured
+        if (rules.isRightClickAllowed() && input.menuOpen) {
+            return BlockDecision.ALLOW_RIGHT_CLICK;
+        }
+
+        if (rules.isTriggerSpellsEnabled() && !input.triggerWindowOpen) {
+            return BlockDecision.ALLOW_NO_TRIGGER;
+        }
+
+        // Only teleports next to the trigger spell get misclicked, unless it was cast just now
+        if (input.teleport != null && rules.isTriggerSpellsEnabled() && rules.getProximityPixels() > 0
+                && input.triggerDistance > rules.getProximityPixels() && input.ticksSinceTrigger > rules.getProximityTicks()) {
+            return BlockDecision.ALLOW_FAR_FROM_TRIGGER;
+        }
+
+        if (!rules.isModifierKeyEnabled()) {
+            return BlockDecision.BLOCK;
+        }
+
+        boolean modifierHeld = rules.getModifierKey() == AccidentalTeleportBlockerPluginConfig.ModifierKey.SHIFT
+                ? input.shiftHeld
+                : input.ctrlHeld;
+
+        return modifierHeld ? BlockDecision.ALLOW_MODIFIER : BlockDecision.BLOCK_MODIFIER_REQUIRED;
+    }
+}
@@ -0,0 +1,253 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.api.Item;
+
+import java.util.Arrays;
+
+/**
+ * Decides which clicked spells were actually cast, so only real casts of trigger spells open a block window.
+ * <p>
+ * Cast clicks are buffered in a small ring. During a game tick the effects of a cast are collected: a gain
+ * in magic xp, an animation or graphic on the local player, and runes leaving the inventory or rune pouch.
+ * When the tick ends, the last buffered click is confirmed if the tick had a magic xp gain together with
+ * one of the other effects. The game casts at most one spell per tick and a later click replaces an
+ * earlier one, so the clicks before it are dropped. Xp from autocasting or other sources confirms nothing
+ * without a click, and clicks that never lead to a cast expire after {@link #CAST_TIMEOUT_TICKS}.
+ * <p>
+ * Not thread-safe, only use it from the client thread.
+ */
+final class CastCorrelator {
+
+    /**
+     * Returned by {@link #endTick(int)} when no cast was confirmed
+     */
+    static final int NO_CAST = -2;
+
+    /**
+     * Ticks a click waits for its cast, enough to walk into range of a target
+     */
+    static final int CAST_TIMEOUT_TICKS = 5;
+
+    private static final int XP_GAINED = 1;
+    private static final int ANIMATION = 2;
+    private static final int GRAPHIC = 4;
+    private static final int RUNES_USED = 8;
+
+    private static final int CAST_EFFECTS = ANIMATION | GRAPHIC | RUNES_USED;
+
+    private static final int CAPACITY = 8;
+    private static final int MASK = CAPACITY - 1;
+
+    // Rune item ids from the game: elemental, catalytic and combination runes
+    private static final int[] RUNE_IDS = {
+            554, 555, 556, 557, 558, 559, 560, 561, 562, 563, 564, 565, 566, 9075, 21880, 28929,
+            4694, 4695, 4696, 4697, 4698, 4699
+    };
+
+    // Rune pouch amount varbits from the game, one per slot
+    private static final int[] RUNE_POUCH_AMOUNT_VARBITS = {1624, 1625, 1626, 14286};
+
+    private static final int UNKNOWN = -1;
+
+    // Buffered clicks: trigger id (or SpellPatternMatcher.NO_MATCH), spellbook spell and the tick of the click
+    private final int[] castTriggers = new int[CAPACITY];
+    private final SpellIndex.Spell[] castSpells = new SpellIndex.Spell[CAPACITY];
+    private final int[] castTicks = new int[CAPACITY];
+    private int head;
+    private int size;
+
+    private SpellIndex.Spell confirmedSpell;
+    private int confirmedTick;
+
+    private int effects;
+    private int unconfirmed;
+
+    private int magicXp = UNKNOWN;
+    private final int[] inventoryRunes = new int[RUNE_IDS.length];
+    private final int[] runeCounts = new int[RUNE_IDS.length];
+    private boolean inventoryKnown;
+    private final int[] runePouchAmounts = new int[RUNE_POUCH_AMOUNT_VARBITS.length];
+
+    CastCorrelator() {
+        Arrays.fill(runePouchAmounts, UNKNOWN);
+    }
+
+    /**
+     * Buffers a cast click, dropping the oldest click when the ring is full.
+     *
+     * @param trigger trigger id of the spell, or {@link SpellPatternMatcher#NO_MATCH} for other spells
+     * @param spell   the spellbook spell being cast, or null if it's not known
+     */
+    void addCast(int trigger, SpellIndex.Spell spell, int tick) {
+        if (size == CAPACITY) {
+            head = (head + 1) & MASK;
+            size--;
+            unconfirmed++;
+        }
+
+        int slot = (head + size) & MASK;
+        castTriggers[slot] = trigger;
+        castSpells[slot] = spell;
+        castTicks[slot] = tick;
+        size++;
+    }
+
+    void magicXpChanged(int xp) {
+        if (magicXp != UNKNOWN && xp > magicXp) {
+            effects |= XP_GAINED;
+        }
+
+        magicXp = xp;
+    }
+
+    void localPlayerAnimated() {
+        effects |= ANIMATION;
+    }
+
+    void localPlayerGraphic() {
+        effects |= GRAPHIC;
+    }
+
+    /**
+     * Compares the runes in the inventory with the previous inventory.
+     */
+    void inventoryChanged(Item[] items) {
+        Arrays.fill(runeCounts, 0);
+
+        for (Item item : items) {
+            int rune = runeIndexOf(item.getId());
+
+            if (rune != UNKNOWN) {
+                runeCounts[rune] += item.getQuantity();
+            }
+        }
+
+        for (int i = 0; i < runeCounts.length; i++) {
+            if (inventoryKnown && runeCounts[i] < inventoryRunes[i]) {
+                effects |= RUNES_USED;
+            }
+
+            inventoryRunes[i] = runeCounts[i];
+        }
+
+        inventoryKnown = true;
+    }
+
+    static boolean isRune(int itemId) {
+        return runeIndexOf(itemId) != UNKNOWN;
+    }
+
+    static boolean isRunePouchVarbit(int varbitId) {
+        return runePouchSlotOf(varbitId) != UNKNOWN;
+    }
+
+    void varbitChanged(int varbitId, int value) {
+        int slot = runePouchSlotOf(varbitId);
+
+        if (slot == UNKNOWN) {
+            return;
+        }
+
+        if (runePouchAmounts[slot] != UNKNOWN && value < runePouchAmounts[slot]) {
+            effects |= RUNES_USED;
+        }
+
+        runePouchAmounts[slot] = value;
+    }
+
+    /**
+     * Matches the effects seen during the tick against the buffered clicks and expires old clicks. Call it
+     * once per game tick, after the tick's events.
+     *
+     * @return the trigger id of the confirmed cast, {@link SpellPatternMatcher#NO_MATCH} if the confirmed cast
+     * is not a trigger spell, or {@link #NO_CAST}
+     */
+    int endTick(int tick) {
+        int confirmed = NO_CAST;
+        confirmedSpell = null;
+
+        if (size > 0 && (effects & XP_GAINED) != 0 && (effects & CAST_EFFECTS) != 0) {
+            int slot = (head + size - 1) & MASK;
+            confirmed = castTriggers[slot];
+            confirmedSpell = castSpells[slot];
+            confirmedTick = castTicks[slot];
+            head = 0;
+            size = 0;
+        }
+
+        while (size > 0 && tick - castTicks[head] >= CAST_TIMEOUT_TICKS) {
+            head = (head + 1) & MASK;
+            size--;
+            unconfirmed++;
+        }
+
+        effects = 0;
+        return confirmed;
+    }
+
+    /**
+     * Spellbook spell of the cast confirmed by the last {@link #endTick(int)}, or null if none was confirmed or
+     * the spell is not known.
+     */
+    SpellIndex.Spell getConfirmedSpell() {
+        return confirmedSpell;
+    }
+
+    /**
+     * Tick the cast confirmed by the last {@link #endTick(int)} was clicked.
+     */
+    int getConfirmedTick() {
+        return confirmedTick;
+    }
+
+    /**
+     * Clicks that expired or were pushed out of the ring since the last call.
+     */
+    int takeUnconfirmed() {
+        int count = unconfirmed;
+        unconfirmed = 0;
+        return count;
+    }
+
+    /**
+     * Drops the buffered clicks, for when trigger ids change with the trigger list.
+     */
+    void clearCasts() {
+        Arrays.fill(castSpells, null);
+        head = 0;
+        size = 0;
+        confirmedSpell = null;
+    }
+
+    /**
+     * Forgets everything, including the xp and runes the next changes are compared with.
+     */
+    void reset() {
+        clearCasts();
+        effects = 0;
+        unconfirmed = 0;
+        magicXp = UNKNOWN;
+        inventoryKnown = false;
+        Arrays.fill(runePouchAmounts, UNKNOWN);
+    }
+
+    private static int runeIndexOf(int itemId) {
+        for (int i = 0; i < RUNE_IDS.length; i++) {
+            if (RUNE_IDS[i] == itemId) {
+                return i;
+            }
+        }
+
+        return UNKNOWN;
+    }
+
+    private static int runePouchSlotOf(int varbitId) {
+        for (int i = 0; i < RUNE_POUCH_AMOUNT_VARBITS.length; i++) {
+            if (RUNE_POUCH_AMOUNT_VARBITS[i] == varbitId) {
+                return i;
+            }
+        }
+
+        return UNKNOWN;
+    }
+}
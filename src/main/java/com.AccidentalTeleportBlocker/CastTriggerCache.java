@@ -0,0 +1,73 @@
+package com.AccidentalTeleportBlocker;
+
+import java.util.Arrays;
+
+/**
+ * Trigger ids of recently cast spells by menu target, so casting the same spell again skips normalizing
+ * the target and running it through the {@link SpellPatternMatcher}.
+ * <p>
+ * A small open-addressed table, probed a few slots from the target's hash. Entries are tagged with the
+ * {@link RuleSnapshot#getEpoch() epoch} of the rules they were matched against: blocking or unblocking,
+ * changing the trigger list or the config, and switching profiles publish a new snapshot, which makes
+ * every entry stale with one int compare and without clearing anything. Trigger ids don't depend on the
+ * spellbook, so switching spellbooks keeps the entries.
+ * <p>
+ * Not thread-safe, only use it from the client thread.
+ */
+final class CastTriggerCache {
+
+    private static final int SIZE = 256;
+    private static final int MASK = SIZE - 1;
+    private static final int MAX_PROBES = 8;
+
+    private final String[] targets = new String[SIZE];
+    private final int[] epochs = new int[SIZE];
+    private final int[] triggers = new int[SIZE];
+
+    /**
+     * The trigger id of the spell named by the menu target, or {@link SpellPatternMatcher#NO_MATCH}.
+     * Allocates only when the target is not cached for these rules.
+     */
+    int get(RuleSnapshot rules, String target) {
+        int epoch = rules.getEpoch();
+        int home = spread(target.hashCode()) & MASK;
+        int free = -1;
+
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (home + probe) & MASK;
+            String cached = targets[slot];
+
+            if (cached == target || cached != null && cached.equals(target)) {
+                if (epochs[slot] != epoch) {
+                    return put(slot, rules, target);
+                }
+
+                return triggers[slot];
+            }
+
+            if (free == -1 && (cached == null || epochs[slot] != epoch)) {
+                free = slot;
+            }
+        }
+
+        // Every probed slot holds a target of the current rules, the first one makes room
+        return put(free != -1 ? free : home, rules, target);
+    }
+
+    void clear() {
+        Arrays.fill(targets, null);
+    }
+
+    private int put(int slot, RuleSnapshot rules, String target) {
+        int trigger = rules.getTriggerSpells().getMatcher().match(MenuTargetNormalizer.normalize(target));
+
+        targets[slot] = target;
+        epochs[slot] = rules.getEpoch();
+        triggers[slot] = trigger;
+        return trigger;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
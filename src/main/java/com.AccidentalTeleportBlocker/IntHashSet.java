@@ -0,0 +1,93 @@
+package com.AccidentalTeleportBlocker;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of non-negative ints in an open-addressing table with linear probing. Lookups are a hash
+ * and usually a single array read, without boxing, whatever the size of the set. Changes return a new set.
+ */
+final class IntHashSet {
+
+    static final IntHashSet EMPTY = new IntHashSet(new int[0]);
+
+    private static final int FREE = -1;
+
+    private final int[] table;
+    private final int size;
+
+    private IntHashSet(int[] keys) {
+        // At most half full, so probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(1, keys.length) * 2 - 1) << 1;
+        int[] table = new int[capacity];
+        int size = 0;
+        Arrays.fill(table, FREE);
+
+        for (int key : keys) {
+            if (key < 0) {
+                throw new IllegalArgumentException("Negative key " + key);
+            }
+
+            int slot = indexOf(table, key);
+
+            if (table[slot] == FREE) {
+                table[slot] = key;
+                size++;
+            }
+        }
+
+        this.table = table;
+        this.size = size;
+    }
+
+    static IntHashSet of(int... keys) {
+        return keys.length == 0 ? EMPTY : new IntHashSet(keys);
+    }
+
+    boolean contains(int key) {
+        return key >= 0 && table[indexOf(table, key)] == key;
+    }
+
+    int size() {
+        return size;
+    }
+
+    IntHashSet with(int key) {
+        if (contains(key)) {
+            return this;
+        }
+
+        int[] keys = Arrays.copyOf(toArray(), size + 1);
+        keys[size] = key;
+        return new IntHashSet(keys);
+    }
+
+    IntHashSet without(int key) {
+        if (!contains(key)) {
+            return this;
+        }
+
+        return of(Arrays.stream(toArray()).filter(k -> k != key).toArray());
+    }
+
+    /**
+     * The keys in ascending order.
+     */
+    int[] toArray() {
+        return Arrays.stream(table).filter(key -> key != FREE).sorted().toArray();
+    }
+
+    /**
+     * Slot of the key, or of the free slot where it would go.
+     */
+    private static int indexOf(int[] table, int key) {
+        int mask = table.length - 1;
+        int hash = key * 0x9E3779B9;
+        int slot = (hash ^ hash >>> 16) & mask;
+
+        while (table[slot] != FREE && table[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+}
@@ -0,0 +1,57 @@
+package com.AccidentalTeleportBlocker;
+
+/**
+ * Histogram of durations in nanoseconds with fixed power-of-two buckets: bucket {@code i} counts the
+ * durations below {@code 2^i} ns that did not fit in bucket {@code i - 1}. Percentiles are reported as
+ * the upper bound of their bucket, which is precise enough to tell 50µs from 5ms. Recording never allocates.
+ * <p>
+ * Not thread-safe, only use it from the client thread.
+ */
+class LatencyHistogram {
+
+    private static final int BUCKETS = 40; // Up to 2^39 ns, about 9 minutes
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long max;
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        counts[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos))]++;
+        count++;
+
+        if (nanos > max) {
+            max = nanos;
+        }
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    /**
+     * Upper bound in nanoseconds of the bucket the given percentile (0-100) falls in, or 0 if nothing
+     * was recorded.
+     */
+    long getPercentile(double percentile) {
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+
+            if (seen >= rank && seen > 0) {
+                return Math.min(max, 1L << i);
+            }
+        }
+
+        return 0;
+    }
+}
@@ -0,0 +1,59 @@
+package com.AccidentalTeleportBlocker;
+
+/**
+ * Normalizes menu targets such as {@code <col=00ff00>Varrock Teleport</col>} into plain
+ * lowercase spell names ({@code varrock teleport}).
+ * <p>
+ * Color tags are stripped and everything except {@code a-z} and spaces is dropped in a single
+ * pass over the characters. Menu handlers look spells up in the {@link SpellIndex} instead of
+ * normalizing every menu target.
+ */
+final class MenuTargetNormalizer {
+
+    private MenuTargetNormalizer() {
+    }
+
+    /**
+     * Equivalent to {@code target.toLowerCase().replaceAll("<.*?>", "").replaceAll("[^a-z ]", "").trim()}
+     * for the ASCII targets the game uses, without the regexes and intermediate strings.
+     */
+    static String normalize(String target) {
+        int length = target.length();
+        char[] out = new char[length];
+        int size = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = target.charAt(i);
+
+            if (c == '<') {
+                int close = target.indexOf('>', i + 1);
+
+                // An unclosed '<' is not a tag, it is dropped like any other symbol
+                if (close != -1) {
+                    i = close;
+                }
+
+                continue;
+            }
+
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+
+            if ((c >= 'a' && c <= 'z') || c == ' ') {
+                out[size++] = c;
+            }
+        }
+
+        int start = 0;
+        while (start < size && out[start] == ' ') {
+            start++;
+        }
+
+        while (size > start && out[size - 1] == ' ') {
+            size--;
+        }
+
+        return new String(out, start, size - start);
+    }
+}
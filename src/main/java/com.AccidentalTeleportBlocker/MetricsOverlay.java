@@ -0,0 +1,59 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.client.ui.overlay.OverlayPanel;
+import net.runelite.client.ui.overlay.OverlayPosition;
+import net.runelite.client.ui.overlay.components.LineComponent;
+import net.runelite.client.ui.overlay.components.TitleComponent;
+
+import javax.inject.Inject;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+
+/**
+ * Shows the {@link PluginMetrics}, so a hitch on right-click can be compared with the time the plugin took.
+ */
+class MetricsOverlay extends OverlayPanel {
+
+    private final PluginMetrics metrics;
+
+    @Inject
+    MetricsOverlay(PluginMetrics metrics) {
+        this.metrics = metrics;
+        setPosition(OverlayPosition.TOP_LEFT);
+    }
+
+    @Override
+    public Dimension render(Graphics2D graphics) {
+        panelComponent.getChildren().add(TitleComponent.builder()
+                .text("Teleport Blocker")
+                .build());
+
+        addLatency("Menu", metrics.getMenuOpened());
+        addLatency("Click", metrics.getMenuOptionClicked());
+        addCount("Blocked", metrics.getBlockCount());
+        addCount("Modifier bypasses", metrics.getDecisionCount(BlockDecision.ALLOW_MODIFIER));
+        addCount("Right-click bypasses", metrics.getDecisionCount(BlockDecision.ALLOW_RIGHT_CLICK));
+        addCount("Trigger windows", metrics.getTriggerWindowActivations());
+        addCount("Confirmed casts", metrics.getConfirmedCasts());
+        addCount("Unconfirmed casts", metrics.getUnconfirmedCasts());
+
+        return super.render(graphics);
+    }
+
+    private void addLatency(String handler, LatencyHistogram histogram) {
+        addLine(handler + " p50/p99", PluginMetrics.formatNanos(histogram.getPercentile(50)) + " / "
+                + PluginMetrics.formatNanos(histogram.getPercentile(99)));
+        addLine(handler + " max", PluginMetrics.formatNanos(histogram.getMax()));
+    }
+
+    private void addCount(String name, long count) {
+        addLine(name, Long.toString(count));
+    }
+
+    private void addLine(String left, String right) {
+        panelComponent.getChildren().add(LineComponent.builder()
+                .left(left)
+                .right(right)
+                .build());
+    }
+}
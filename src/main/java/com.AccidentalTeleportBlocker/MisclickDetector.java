@@ -0,0 +1,249 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.api.coords.WorldPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Spots teleports that were likely cast by accident while it happens, and counts them per teleport and
+ * cause so the plugin can suggest blocking the teleport.
+ * <p>
+ * Two patterns count as a misclick: a teleport cast within {@link #MISCLICK_TICKS} of casting another spell
+ * on a neighbouring spellbook slot, and a teleport followed within {@link #TELEPORT_BACK_TICKS} by another
+ * teleport that lands back within {@link #BACK_DISTANCE} tiles of where the first one was cast. Only casts
+ * confirmed by their effects are added, a click that just selects a spell or fails is not a cast. Recent casts
+ * are kept in a fixed ring with the spellbook widget positions of their spells, and the counts in fixed
+ * primitive arrays, so every cast costs the same and allocates nothing.
+ * <p>
+ * Not thread-safe, only use it from the client thread.
+ */
+final class MisclickDetector {
+
+    /**
+     * Returned by {@link #cast} when no block should be suggested
+     */
+    static final int NO_SUGGESTION = -1;
+
+    static final int MISCLICK_TICKS = 3;
+    static final int TELEPORT_BACK_TICKS = 10;
+
+    /**
+     * Tiles from where a teleport was cast that count as back there, teleports land on a random tile nearby
+     */
+    static final int BACK_DISTANCE = 20;
+
+    /**
+     * Ticks from casting a teleport until it has certainly landed
+     */
+    static final int LANDING_TICKS = 8;
+
+    private static final TeleportSpell[] TELEPORTS = TeleportSpell.values();
+
+    private static final int RECENT = 8;
+    private static final int RECENT_MASK = RECENT - 1;
+
+    // Open addressing, at most three quarters full
+    private static final int PAIR_BITS = 8;
+    private static final int PAIRS = 1 << PAIR_BITS;
+    private static final int PAIR_MASK = PAIRS - 1;
+    private static final int MAX_PAIRS = PAIRS * 3 / 4;
+
+    private static final int EMPTY = -1;
+    private static final int TELEPORT_BACK = 0xFFFF; // Cause of a teleport followed by another one
+
+    // Recent spell casts, oldest first from recentNext
+    private final SpellIndex.Spell[] recentSpells = new SpellIndex.Spell[RECENT];
+    private final int[] recentTicks = new int[RECENT];
+    private final WorldPoint[] recentLocations = new WorldPoint[RECENT];
+    private int recentNext;
+    private int recentSize;
+
+    // Misclick counts by teleport and cause, the cause name is null for teleporting back
+    private final int[] pairKeys = new int[PAIRS];
+    private final int[] pairCounts = new int[PAIRS];
+    private final String[] pairCauses = new String[PAIRS];
+    private int pairSize;
+
+    // Teleport that was followed by another one, until the other one lands
+    private TeleportSpell landingAfter;
+    private WorldPoint landingOrigin;
+    private int landingUntil;
+
+    private int suggestAfter;
+
+    MisclickDetector() {
+        Arrays.fill(pairKeys, EMPTY);
+    }
+
+    /**
+     * @param suggestAfter misclicks of the same teleport and cause before a block is suggested, and again at
+     *                     every multiple. 0 turns suggestions off, misclicks are still counted.
+     */
+    void configure(int suggestAfter) {
+        this.suggestAfter = suggestAfter;
+    }
+
+    /**
+     * Adds a confirmed cast of a spellbook spell.
+     *
+     * @param tick     the tick the cast was clicked
+     * @param location where the player cast a teleport, or null if it's not known
+     * @return the misclick count to suggest blocking the teleport for, see {@link #getTeleport(int)},
+     * or {@link #NO_SUGGESTION}
+     */
+    int cast(SpellIndex.Spell spell, int tick, WorldPoint location) {
+        int suggestion = spell.isTeleport() ? detect(spell, tick) : NO_SUGGESTION;
+
+        recentSpells[recentNext] = spell;
+        recentTicks[recentNext] = tick;
+        recentLocations[recentNext] = location;
+        recentNext = (recentNext + 1) & RECENT_MASK;
+        recentSize = Math.min(recentSize + 1, RECENT);
+
+        return suggestion;
+    }
+
+    private int detect(SpellIndex.Spell teleportSpell, int tick) {
+        TeleportSpell teleport = teleportSpell.getTeleport();
+
+        // Newest first, until the casts are too old for either pattern
+        for (int i = 1; i <= recentSize; i++) {
+            int slot = (recentNext - i) & RECENT_MASK;
+            SpellIndex.Spell recent = recentSpells[slot];
+            int age = tick - recentTicks[slot];
+
+            if (age > TELEPORT_BACK_TICKS) {
+                break;
+            }
+
+            if (recent.isTeleport()) {
+                // Casting the same teleport again is a retry, not a way back. Whether the other one went back
+                // is known once it landed.
+                if (recent.getTeleport() != null && recent.getTeleport() != teleport && recentLocations[slot] != null) {
+                    landingAfter = recent.getTeleport();
+                    landingOrigin = recentLocations[slot];
+                    landingUntil = tick + LANDING_TICKS;
+                }
+
+                break;
+            }
+
+            if (teleport != null && age <= MISCLICK_TICKS && recent.isNextTo(teleportSpell)) {
+                return count(teleport, causeOf(recent), recent.getDisplayName());
+            }
+        }
+
+        return NO_SUGGESTION;
+    }
+
+    /**
+     * Whether a teleport that followed another one has yet to land, see {@link #moved}.
+     */
+    boolean isLanding() {
+        return landingAfter != null;
+    }
+
+    /**
+     * Checks where a teleport that followed another one landed. Landing back where the first teleport was cast
+     * counts as a misclick of the first one.
+     *
+     * @param location where the player is now, or null if it's not known
+     * @return the misclick count to suggest blocking the teleport for, or {@link #NO_SUGGESTION}
+     */
+    int moved(WorldPoint location, int tick) {
+        if (landingAfter == null) {
+            return NO_SUGGESTION;
+        }
+
+        TeleportSpell teleport = landingAfter;
+
+        if (location != null && location.getPlane() == landingOrigin.getPlane()
+                && location.distanceTo2D(landingOrigin) <= BACK_DISTANCE) {
+            clearLanding();
+            return count(teleport, TELEPORT_BACK, null);
+        }
+
+        if (tick >= landingUntil) {
+            clearLanding();
+        }
+
+        return NO_SUGGESTION;
+    }
+
+    private void clearLanding() {
+        landingAfter = null;
+        landingOrigin = null;
+    }
+
+    private int count(TeleportSpell teleport, int cause, String causeName) {
+        int key = teleport.ordinal() << 16 | cause;
+        int slot = (key * 0x9E3779B9) >>> (32 - PAIR_BITS);
+
+        while (pairKeys[slot] != EMPTY && pairKeys[slot] != key) {
+            slot = (slot + 1) & PAIR_MASK;
+        }
+
+        if (pairKeys[slot] == EMPTY) {
+            if (pairSize == MAX_PAIRS) {
+                return NO_SUGGESTION;
+            }
+
+            pairKeys[slot] = key;
+            pairCauses[slot] = causeName;
+            pairSize++;
+        }
+
+        pairCounts[slot]++;
+        return suggestAfter > 0 && pairCounts[slot] % suggestAfter == 0 ? slot : NO_SUGGESTION;
+    }
+
+    private static int causeOf(SpellIndex.Spell spell) {
+        return spell.getSpellbook().ordinal() << 12 | (spell.getWidgetId() & 0xFFF);
+    }
+
+    TeleportSpell getTeleport(int pair) {
+        return TELEPORTS[pairKeys[pair] >>> 16];
+    }
+
+    /**
+     * Display name of the spell cast before the misclick, or null if the teleport was followed by teleporting back.
+     */
+    String getCause(int pair) {
+        return pairCauses[pair];
+    }
+
+    int getCount(int pair) {
+        return pairCounts[pair];
+    }
+
+    /**
+     * The most counted misclicks, most first.
+     */
+    List<Integer> getTopPairs(int limit) {
+        List<Integer> pairs = new ArrayList<>();
+
+        for (int i = 0; i < PAIRS; i++) {
+            if (pairKeys[i] != EMPTY) {
+                pairs.add(i);
+            }
+        }
+
+        pairs.sort(Comparator.comparingInt((Integer pair) -> pairCounts[pair]).reversed());
+        return pairs.subList(0, Math.min(limit, pairs.size()));
+    }
+
+    void reset() {
+        Arrays.fill(recentSpells, null);
+        Arrays.fill(recentLocations, null);
+        recentNext = 0;
+        recentSize = 0;
+        Arrays.fill(pairKeys, EMPTY);
+        Arrays.fill(pairCounts, 0);
+        Arrays.fill(pairCauses, null);
+        pairSize = 0;
+        clearLanding();
+    }
+}
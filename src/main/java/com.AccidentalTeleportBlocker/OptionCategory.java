@@ -0,0 +1,146 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.api.MenuAction;
+import net.runelite.client.game.ItemVariationMapping;
+
+/**
+ * Kinds of menu options besides spells that can be blocked, like rubbing jewellery, breaking tablets or
+ * entering portals. A blocked option is identified by a key made of the item or object id and the number
+ * of the option, so checking a click is a single {@link IntHashSet} lookup. Items are keyed by their base
+ * item, so a block on one charge of a piece of jewellery applies to all of its charges.
+ * <p>
+ * Items are numbered differently in the inventory and the worn equipment, so each has its own category.
+ * Options of items in other interfaces, like the bank, can't be blocked.
+ */
+enum OptionCategory {
+    /**
+     * Options of items in the inventory
+     */
+    ITEM("blockedItemOptions"),
+    OBJECT("blockedObjectOptions"),
+    // Recordings and profiles store the ordinal, new categories go last
+    WORN("blockedWornOptions");
+
+    static final int NO_KEY = -1;
+
+    private static final int OPTION_BITS = 4; // Items have up to 10 options, objects 5
+
+    private static final int INVENTORY_GROUP_ID = 149; // Interfaces from the game
+    private static final int EQUIPMENT_GROUP_ID = 387;
+
+    static final int MAX_OPTION = (1 << OPTION_BITS) - 1;
+
+    private final String configKey;
+
+    OptionCategory(String configKey) {
+        this.configKey = configKey;
+    }
+
+    /**
+     * Config key the blocked options of this category are stored under.
+     */
+    String getConfigKey() {
+        return configKey;
+    }
+
+    static int key(int id, int option) {
+        return id << OPTION_BITS | option;
+    }
+
+    /**
+     * Key of the option of the item, shared by all variants of the item, like the charges of jewellery.
+     */
+    static int itemKey(int itemId, int option) {
+        return key(ItemVariationMapping.map(itemId), option);
+    }
+
+    /**
+     * Same key with the item id mapped to its base item, see {@link #itemKey(int, int)}. Object keys are
+     * returned as is.
+     */
+    int baseKey(int key) {
+        return this == OBJECT ? key : itemKey(idOf(key), optionOf(key));
+    }
+
+    static int idOf(int key) {
+        return key >>> OPTION_BITS;
+    }
+
+    static int optionOf(int key) {
+        return key & MAX_OPTION;
+    }
+
+    /**
+     * Category of the menu action, or null if it's not an item or object option.
+     *
+     * @param widgetId the widget of the menu entry, param1
+     */
+    static OptionCategory of(MenuAction action, int itemId, int widgetId) {
+        switch (action) {
+            case CC_OP:
+            case CC_OP_LOW_PRIORITY:
+                if (itemId <= 0) {
+                    return null;
+                }
+
+                switch (widgetId >>> 16) {
+                    case INVENTORY_GROUP_ID:
+                        return ITEM;
+                    case EQUIPMENT_GROUP_ID:
+                        return WORN;
+                    default:
+                        return null;
+                }
+            case ITEM_FIRST_OPTION:
+            case ITEM_SECOND_OPTION:
+            case ITEM_THIRD_OPTION:
+            case ITEM_FOURTH_OPTION:
+            case ITEM_FIFTH_OPTION:
+                return ITEM;
+            case GAME_OBJECT_FIRST_OPTION:
+            case GAME_OBJECT_SECOND_OPTION:
+            case GAME_OBJECT_THIRD_OPTION:
+            case GAME_OBJECT_FOURTH_OPTION:
+            case GAME_OBJECT_FIFTH_OPTION:
+                return OBJECT;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Key of the clicked item or object option, or {@link #NO_KEY} if it's neither.
+     *
+     * @param identifier the menu entry identifier, the option number for widget ops and the id for objects
+     * @param itemId the item of the menu entry, keyed by its base item
+     */
+    static int keyOf(MenuAction action, int identifier, int itemId) {
+        switch (action) {
+            case CC_OP:
+            case CC_OP_LOW_PRIORITY:
+                return itemId > 0 && identifier > 0 && identifier <= MAX_OPTION ? itemKey(itemId, identifier) : NO_KEY;
+            case ITEM_FIRST_OPTION:
+                return itemKey(itemId, 1);
+            case ITEM_SECOND_OPTION:
+                return itemKey(itemId, 2);
+            case ITEM_THIRD_OPTION:
+                return itemKey(itemId, 3);
+            case ITEM_FOURTH_OPTION:
+                return itemKey(itemId, 4);
+            case ITEM_FIFTH_OPTION:
+                return itemKey(itemId, 5);
+            case GAME_OBJECT_FIRST_OPTION:
+                return key(identifier, 1);
+            case GAME_OBJECT_SECOND_OPTION:
+                return key(identifier, 2);
+            case GAME_OBJECT_THIRD_OPTION:
+                return key(identifier, 3);
+            case GAME_OBJECT_FOURTH_OPTION:
+                return key(identifier, 4);
+            case GAME_OBJECT_FIFTH_OPTION:
+                return key(identifier, 5);
+            default:
+                return NO_KEY;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.AccidentalTeleportBlocker;
+
+import javax.inject.Singleton;
+
+/**
+ * Measurements of the plugin's own event handlers: how long they take and what they decided. Recording a
+ * measurement never allocates, so the metrics can stay on while the handlers run.
+ * <p>
+ * Not thread-safe, only use it from the client thread.
+ */
+@Singleton
+class PluginMetrics {
+
+    private final LatencyHistogram menuOpened = new LatencyHistogram();
+    private final LatencyHistogram menuOptionClicked = new LatencyHistogram();
+    private final long[] decisions = new long[BlockDecision.values().length];
+    private long confirmedCasts;
+    private long unconfirmedCasts;
+    private long triggerWindowActivations;
+
+    LatencyHistogram getMenuOpened() {
+        return menuOpened;
+    }
+
+    LatencyHistogram getMenuOptionClicked() {
+        return menuOptionClicked;
+    }
+
+    void countDecision(BlockDecision decision) {
+        decisions[decision.ordinal()]++;
+    }
+
+    long getDecisionCount(BlockDecision decision) {
+        return decisions[decision.ordinal()];
+    }
+
+    /**
+     * Blocked clicks, with or without a modifier key that would have allowed them
+     */
+    long getBlockCount() {
+        return getDecisionCount(BlockDecision.BLOCK) + getDecisionCount(BlockDecision.BLOCK_MODIFIER_REQUIRED);
+    }
+
+    /**
+     * Cast clicks confirmed by the effects of the cast, whether or not the spell was a trigger spell
+     */
+    void countConfirmedCast() {
+        confirmedCasts++;
+    }
+
+    long getConfirmedCasts() {
+        return confirmedCasts;
+    }
+
+    /**
+     * Cast clicks that expired without the effects of a cast
+     */
+    void countUnconfirmedCasts(int count) {
+        unconfirmedCasts += count;
+    }
+
+    long getUnconfirmedCasts() {
+        return unconfirmedCasts;
+    }
+
+    void countTriggerWindowActivation() {
+        triggerWindowActivations++;
+    }
+
+    long getTriggerWindowActivations() {
+        return triggerWindowActivations;
+    }
+
+    /**
+     * Multi-line report of every measurement, for the metrics log.
+     */
+    String format() {
+        StringBuilder report = new StringBuilder();
+        formatLatency(report, "onMenuOpened", menuOpened);
+        formatLatency(report, "onMenuOptionClicked", menuOptionClicked);
+
+        for (BlockDecision decision : BlockDecision.values()) {
+            report.append(String.format("  %-24s %d%n", decision, getDecisionCount(decision)));
+        }
+
+        report.append(String.format("  %-24s %d%n", "TRIGGER_WINDOWS", triggerWindowActivations));
+        report.append(String.format("  %-24s %d%n", "CONFIRMED_CASTS", confirmedCasts));
+        report.append(String.format("  %-24s %d%n", "UNCONFIRMED_CASTS", unconfirmedCasts));
+        return report.toString();
+    }
+
+    private static void formatLatency(StringBuilder report, String handler, LatencyHistogram histogram) {
+        report.append(String.format("  %-24s n=%d p50=%s p99=%s max=%s%n", handler, histogram.getCount(),
+                formatNanos(histogram.getPercentile(50)), formatNanos(histogram.getPercentile(99)),
+                formatNanos(histogram.getMax())));
+    }
+
+    static String formatNanos(long nanos) {
+        if (nanos < 1_000_000) {
+            return String.format("%.1fµs", nanos / 1e3);
+        }
+
+        return String.format("%.1fms", nanos / 1e6);
+    }
+}
@@ -0,0 +1,201 @@
+package com.AccidentalTeleportBlocker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+
+/**
+ * Converts a {@link RuleSnapshot} to a single config value and back, so a whole profile is stored under
+ * one key instead of a comma-separated string per block list.
+ * <p>
+ * The value is Base64 of a version byte followed by the blocked teleport masks, the blocked item and
+ * object options, the settings and the trigger spell list. Option keys are sorted and stored as the
+ * difference with the previous key, which keeps long lists of similar item ids short. Decoding compiles
+ * the trigger spells, so a decoded snapshot can be published as is. Version 1 profiles have no proximity
+ * settings and block teleports anywhere in the spellbook. Profiles before version 3 keep inventory and worn
+ * item options in one list, which is decoded as both. Items are mapped to their base item when decoding,
+ * since older profiles stored the id of the variant that was blocked.
+ */
+final class ProfileCodec {
+
+    static final int VERSION = 3;
+
+    private static final int MODIFIER_KEY_ENABLED = 1;
+    private static final int RIGHT_CLICK_ALLOWED = 2;
+    private static final int TRIGGER_SPELLS_ENABLED = 4;
+
+    /**
+     * More blocked options than fit in the {@link SharedRuleFile}, so only corrupt profiles have more
+     */
+    private static final int MAX_OPTIONS = 1 << 16;
+
+    private ProfileCodec() {
+    }
+
+    static String encode(RuleSnapshot rules) {
+        return Base64.getEncoder().encodeToString(toBytes(rules));
+    }
+
+    /**
+     * The profile without the Base64, as stored in the {@link SharedRuleFile}.
+     */
+    static byte[] toBytes(RuleSnapshot rules) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeByte(Spellbook.values().length);
+
+            for (Spellbook spellbook : Spellbook.values()) {
+                out.writeLong(rules.getBlockedTeleportMask(spellbook));
+            }
+
+            out.writeByte(OptionCategory.values().length);
+
+            for (OptionCategory category : OptionCategory.values()) {
+                int[] keys = rules.getBlockedOptions(category).toArray();
+                int previous = 0;
+                writeVarInt(out, keys.length);
+
+                for (int key : keys) {
+                    writeVarInt(out, key - previous);
+                    previous = key;
+                }
+            }
+
+            out.writeByte((rules.isModifierKeyEnabled() ? MODIFIER_KEY_ENABLED : 0)
+                    | (rules.isRightClickAllowed() ? RIGHT_CLICK_ALLOWED : 0)
+                    | (rules.isTriggerSpellsEnabled() ? TRIGGER_SPELLS_ENABLED : 0));
+            out.writeByte(rules.getModifierKey().ordinal());
+            writeVarInt(out, rules.getDefaultWindowTicks());
+            writeVarInt(out, rules.getProximityPixels());
+            writeVarInt(out, rules.getProximityTicks());
+            out.writeUTF(rules.getTriggerSpells().format());
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Not thrown by in-memory streams
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value is not a profile of a known version
+     */
+    static RuleSnapshot decode(String value) {
+        return read(new ByteArrayInputStream(Base64.getDecoder().decode(value)));
+    }
+
+    /**
+     * Reads a profile written by {@link #toBytes(RuleSnapshot)}.
+     *
+     * @throws IllegalArgumentException if the stream does not hold a profile of a known version, or is corrupt
+     */
+    static RuleSnapshot read(InputStream stream) {
+        try (DataInputStream in = new DataInputStream(stream)) {
+            int version = in.readUnsignedByte();
+
+            if (version < 1 || version > VERSION) {
+                throw new IllegalArgumentException("Unsupported profile version " + version);
+            }
+
+            long[] masks = new long[Spellbook.values().length];
+            int spellbooks = in.readUnsignedByte();
+
+            for (int i = 0; i < spellbooks; i++) {
+                long mask = in.readLong();
+
+                // Spellbooks added later are left empty, unknown ones are skipped
+                if (i < masks.length) {
+                    masks[i] = mask;
+                }
+            }
+
+            IntHashSet[] options = RuleSnapshot.emptyBlockedOptions();
+            int categories = in.readUnsignedByte();
+
+            for (int i = 0; i < categories; i++) {
+                int count = readVarInt(in);
+
+                if (count > MAX_OPTIONS) {
+                    throw new IllegalArgumentException("Corrupt profile, " + count + " blocked options");
+                }
+
+                int[] keys = new int[count];
+                int previous = 0;
+
+                for (int j = 0; j < keys.length; j++) {
+                    keys[j] = previous += readVarInt(in);
+
+                    if (keys[j] < 0) {
+                        throw new IllegalArgumentException("Corrupt profile, blocked option " + keys[j]);
+                    }
+                }
+
+                if (i < options.length) {
+                    OptionCategory category = OptionCategory.values()[i];
+
+                    for (int j = 0; j < keys.length; j++) {
+                        keys[j] = category.baseKey(keys[j]);
+                    }
+
+                    options[i] = IntHashSet.of(keys);
+                }
+            }
+
+            if (version < 3) {
+                options[OptionCategory.WORN.ordinal()] = options[OptionCategory.ITEM.ordinal()];
+            }
+
+            int flags = in.readUnsignedByte();
+            AccidentalTeleportBlockerPluginConfig.ModifierKey[] modifierKeys = AccidentalTeleportBlockerPluginConfig.ModifierKey.values();
+            int modifierKey = in.readUnsignedByte();
+            int windowTicks = readVarInt(in);
+            int proximityPixels = version >= 2 ? readVarInt(in) : 0;
+            int proximityTicks = version >= 2 ? readVarInt(in) : 0;
+            TriggerSpellList triggerSpells = TriggerSpellList.parse(in.readUTF());
+
+            return new RuleSnapshot(masks, options, triggerSpells, (flags & TRIGGER_SPELLS_ENABLED) != 0, windowTicks,
+                    (flags & MODIFIER_KEY_ENABLED) != 0, modifierKeys[Math.min(modifierKey, modifierKeys.length - 1)],
+                    (flags & RIGHT_CLICK_ALLOWED) != 0, proximityPixels, proximityTicks);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Truncated or corrupt profile", e);
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads a varint written by {@link #writeVarInt}, all of which are non-negative.
+     *
+     * @throws IllegalArgumentException if the varint is negative or too long
+     */
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Corrupt profile, negative value " + value);
+                }
+
+                return value;
+            }
+        }
+
+        throw new IllegalArgumentException("Corrupt profile, varint too long");
+    }
+}
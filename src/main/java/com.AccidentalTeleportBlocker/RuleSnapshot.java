@@ -0,0 +1,181 @@
+package com.AccidentalTeleportBlocker;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable, compiled set of block rules: the blocked teleports per spellbook, the blocked item and object
+ * options, the trigger spells and the config settings the block decision depends on. Every change
+ * produces a new snapshot with a new {@link #getEpoch() epoch}.
+ */
+final class RuleSnapshot {
+
+    private static final AtomicInteger NEXT_EPOCH = new AtomicInteger();
+
+    static final RuleSnapshot EMPTY = new RuleSnapshot(new long[Spellbook.values().length], emptyBlockedOptions(),
+            TriggerSpellList.empty(), false, 0, true, AccidentalTeleportBlockerPluginConfig.ModifierKey.CTRL, true, 0, 0);
+
+    private final long[] blockedTeleportMasks;
+    private final IntHashSet[] blockedOptions;
+    private final TriggerSpellList triggerSpells;
+    private final boolean triggerSpellsEnabled;
+    private final int defaultWindowTicks;
+    private final boolean modifierKeyEnabled;
+    private final AccidentalTeleportBlockerPluginConfig.ModifierKey modifierKey;
+    private final boolean rightClickAllowed;
+    private final int proximityPixels;
+    private final int proximityTicks;
+    private final int epoch = NEXT_EPOCH.getAndIncrement();
+
+    RuleSnapshot(long[] blockedTeleportMasks, IntHashSet[] blockedOptions, TriggerSpellList triggerSpells, boolean triggerSpellsEnabled,
+                 int defaultWindowTicks, boolean modifierKeyEnabled, AccidentalTeleportBlockerPluginConfig.ModifierKey modifierKey,
+                 boolean rightClickAllowed, int proximityPixels, int proximityTicks) {
+        this.blockedTeleportMasks = blockedTeleportMasks.clone();
+        this.blockedOptions = blockedOptions.clone();
+        this.triggerSpells = triggerSpells;
+        this.triggerSpellsEnabled = triggerSpellsEnabled;
+        this.defaultWindowTicks = defaultWindowTicks;
+        this.modifierKeyEnabled = modifierKeyEnabled;
+        this.modifierKey = modifierKey;
+        this.rightClickAllowed = rightClickAllowed;
+        this.proximityPixels = proximityPixels;
+        this.proximityTicks = proximityTicks;
+    }
+
+    /**
+     * Copies the settings from the config, keeping the block lists and trigger spells.
+     */
+    RuleSnapshot withConfig(AccidentalTeleportBlockerPluginConfig config) {
+        int windowTicks = config.activationDelayTicks();
+
+        if (windowTicks <= 0) {
+            windowTicks = TriggerSpellList.secondsToTicks(config.activationDelaySeconds());
+        }
+
+        return new RuleSnapshot(blockedTeleportMasks, blockedOptions, triggerSpells, config.enableCustomTriggerSpells(), windowTicks,
+                config.enableModifierKey(), config.modifierKey(), config.allowRightClickWithoutModifier(),
+                config.triggerProximityPixels(), config.triggerProximityTicks());
+    }
+
+    RuleSnapshot withBlockedTeleportMasks(long[] masks) {
+        return new RuleSnapshot(masks, blockedOptions, triggerSpells, triggerSpellsEnabled, defaultWindowTicks,
+                modifierKeyEnabled, modifierKey, rightClickAllowed, proximityPixels, proximityTicks);
+    }
+
+    RuleSnapshot withTeleportBlocked(TeleportSpell teleport, boolean blocked) {
+        long[] masks = blockedTeleportMasks.clone();
+        int spellbook = teleport.getSpellbook().ordinal();
+
+        if (blocked) {
+            masks[spellbook] |= teleport.getBit();
+        } else {
+            masks[spellbook] &= ~teleport.getBit();
+        }
+
+        return withBlockedTeleportMasks(masks);
+    }
+
+    /**
+     * Replaces the blocked item and object options, indexed by {@link OptionCategory} ordinal.
+     */
+    RuleSnapshot withBlockedOptions(IntHashSet[] options) {
+        return new RuleSnapshot(blockedTeleportMasks, options, triggerSpells, triggerSpellsEnabled, defaultWindowTicks,
+                modifierKeyEnabled, modifierKey, rightClickAllowed, proximityPixels, proximityTicks);
+    }
+
+    RuleSnapshot withOptionBlocked(OptionCategory category, int key, boolean blocked) {
+        IntHashSet[] options = blockedOptions.clone();
+        IntHashSet current = options[category.ordinal()];
+        options[category.ordinal()] = blocked ? current.with(key) : current.without(key);
+        return withBlockedOptions(options);
+    }
+
+    /**
+     * Takes the block lists and trigger spells of the other snapshot, keeping the settings of this one.
+     */
+    RuleSnapshot withBlockLists(RuleSnapshot other) {
+        return new RuleSnapshot(other.blockedTeleportMasks, other.blockedOptions, other.triggerSpells, triggerSpellsEnabled,
+                defaultWindowTicks, modifierKeyEnabled, modifierKey, rightClickAllowed, proximityPixels, proximityTicks);
+    }
+
+    RuleSnapshot withTriggerSpells(TriggerSpellList spells) {
+        return new RuleSnapshot(blockedTeleportMasks, blockedOptions, spells, triggerSpellsEnabled, defaultWindowTicks,
+                modifierKeyEnabled, modifierKey, rightClickAllowed, proximityPixels, proximityTicks);
+    }
+
+    boolean isBlocked(TeleportSpell teleport) {
+        return (blockedTeleportMasks[teleport.getSpellbook().ordinal()] & teleport.getBit()) != 0;
+    }
+
+    long getBlockedTeleportMask(Spellbook spellbook) {
+        return blockedTeleportMasks[spellbook.ordinal()];
+    }
+
+    boolean isOptionBlocked(OptionCategory category, int key) {
+        return blockedOptions[category.ordinal()].contains(key);
+    }
+
+    IntHashSet getBlockedOptions(OptionCategory category) {
+        return blockedOptions[category.ordinal()];
+    }
+
+    /**
+     * Differs between any two snapshots, so results computed from a snapshot can be cached under its epoch and
+     * invalidated by any change with one int compare.
+     */
+    int getEpoch() {
+        return epoch;
+    }
+
+    TriggerSpellList getTriggerSpells() {
+        return triggerSpells;
+    }
+
+    boolean isTriggerSpellsEnabled() {
+        return triggerSpellsEnabled;
+    }
+
+    /**
+     * Window length in ticks for the given trigger id, using the configured delay unless the spell has its own.
+     */
+    int getWindowTicks(int triggerId) {
+        int windowTicks = triggerSpells.getWindowTicks(triggerId);
+        return windowTicks == TriggerSpellList.DEFAULT_WINDOW ? defaultWindowTicks : windowTicks;
+    }
+
+    int getDefaultWindowTicks() {
+        return defaultWindowTicks;
+    }
+
+    boolean isModifierKeyEnabled() {
+        return modifierKeyEnabled;
+    }
+
+    AccidentalTeleportBlockerPluginConfig.ModifierKey getModifierKey() {
+        return modifierKey;
+    }
+
+    boolean isRightClickAllowed() {
+        return rightClickAllowed;
+    }
+
+    /**
+     * Distance in pixels from the slot of the trigger spell within which teleports are blocked, 0 blocks them anywhere.
+     */
+    int getProximityPixels() {
+        return proximityPixels;
+    }
+
+    /**
+     * Ticks after a trigger spell during which teleports are blocked anywhere, when only blocking near it.
+     */
+    int getProximityTicks() {
+        return proximityTicks;
+    }
+
+    static IntHashSet[] emptyBlockedOptions() {
+        IntHashSet[] options = new IntHashSet[OptionCategory.values().length];
+        Arrays.fill(options, IntHashSet.EMPTY);
+        return options;
+    }
+}
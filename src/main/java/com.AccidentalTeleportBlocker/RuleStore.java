@@ -0,0 +1,467 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.client.config.ConfigManager;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+/**
+ * Loads and stores the block lists of teleports, item options and object options, the trigger spell list
+ * and the named profiles.
+ * <p>
+ * Writes are deferred: changes only mark a spellbook or the trigger list as dirty, and everything that
+ * is dirty is written in one go once no changes were made for {@link #FLUSH_DELAY_TICKS} ticks. Clicking
+ * through a spellbook to set up a block list therefore results in a single config write per spellbook
+ * instead of one write (and profile sync) per click. Pending changes are flushed on logout and shutdown.
+ * <p>
+ * A profile holds a complete set of rules, stored with {@link ProfileCodec} under a single key and compiled
+ * once when loaded. While a profile is active, block list changes are written to the profile instead of
+ * the block list keys. The settings and trigger spells stay in the config items, which follow the active
+ * profile: after a switch they are written with the other pending changes.
+ * <p>
+ * Not thread-safe, only use it from the client thread.
+ */
+class RuleStore {
+
+    static final String CONFIG_GROUP = "AccidentalTeleportBlocker";
+    static final String CUSTOM_TRIGGER_SPELLS_KEY = "customTriggerSpells";
+
+    private static final String LEGACY_BLOCKED_TELEPORTS_KEY_PREFIX = "blockedTeleports_";
+    private static final String BLOCKED_TELEPORTS_KEY_PREFIX = "blockedTeleportSpells_";
+    private static final String PROFILES_KEY = "profiles";
+    private static final String PROFILE_KEY_PREFIX = "profile_";
+    private static final String ACTIVE_PROFILE_KEY = "activeProfile";
+
+    private static final int FLUSH_DELAY_TICKS = 5;
+    private static final int IDLE = -1;
+
+    private final ConfigManager configManager;
+    private final AccidentalTeleportBlockerPluginConfig config;
+
+    /**
+     * Compiled profiles by name, ignoring case, in name order
+     */
+    private final TreeMap<String, RuleSnapshot> profiles = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private String activeProfile;
+
+    private final boolean[] dirtySpellbooks = new boolean[Spellbook.values().length];
+    private final boolean[] dirtyOptionCategories = new boolean[OptionCategory.values().length];
+    private boolean triggerSpellsDirty;
+    private boolean profileDirty;
+    private boolean profileSettingsDirty;
+    private int ticksSinceChange = IDLE;
+
+    @Inject
+    RuleStore(ConfigManager configManager, AccidentalTeleportBlockerPluginConfig config) {
+        this.configManager = configManager;
+        this.config = config;
+    }
+
+    /**
+     * Whether the config key holds stored rules rather than a setting from the config panel.
+     */
+    static boolean isStorageKey(String key) {
+        for (OptionCategory category : OptionCategory.values()) {
+            if (category.getConfigKey().equals(key)) {
+                return true;
+            }
+        }
+
+        return key.startsWith(BLOCKED_TELEPORTS_KEY_PREFIX) || key.startsWith(LEGACY_BLOCKED_TELEPORTS_KEY_PREFIX)
+                || key.startsWith(PROFILE_KEY_PREFIX) || PROFILES_KEY.equals(key) || ACTIVE_PROFILE_KEY.equals(key);
+    }
+
+    /**
+     * Loads the blocked teleport masks of all spellbooks into the given array, indexed by spellbook ordinal.
+     * Block lists still stored under the old name-based keys are migrated.
+     */
+    void loadBlockedTeleports(long[] masks) {
+        for (Spellbook spellbook : Spellbook.values()) {
+            String blocked = configManager.getConfiguration(CONFIG_GROUP, BLOCKED_TELEPORTS_KEY_PREFIX + spellbook.getKey());
+
+            if (blocked == null) {
+                masks[spellbook.ordinal()] = migrateLegacyBlockedTeleports(spellbook);
+                continue;
+            }
+
+            long mask = 0L;
+
+            for (String s : blocked.split(",")) {
+                String name = s.trim();
+
+                if (name.isEmpty()) {
+                    continue;
+                }
+
+                try {
+                    TeleportSpell spell = TeleportSpell.valueOf(name);
+
+                    if (spell.getSpellbook() == spellbook) {
+                        mask |= spell.getBit();
+                    }
+                } catch (IllegalArgumentException ignored) {
+                    // Teleport no longer exists, drop it
+                }
+            }
+
+            masks[spellbook.ordinal()] = mask;
+        }
+    }
+
+    /**
+     * Converts the old comma-separated teleport names of a spellbook to spell ids and stores them under
+     * the new key. The old key is left alone for one release, so going back to an older version keeps the blocks.
+     */
+    private long migrateLegacyBlockedTeleports(Spellbook spellbook) {
+        String legacyKey = LEGACY_BLOCKED_TELEPORTS_KEY_PREFIX + spellbook.getKey();
+        String blocked = configManager.getConfiguration(CONFIG_GROUP, legacyKey);
+        long mask = 0L;
+
+        if (blocked == null) {
+            return mask;
+        }
+
+        for (String s : blocked.split(",")) {
+            TeleportSpell spell = TeleportSpell.fromNameOrAlias(spellbook, MenuTargetNormalizer.normalize(s));
+
+            if (spell != null) {
+                mask |= spell.getBit();
+            }
+        }
+
+        writeBlockedTeleports(spellbook, mask);
+
+        return mask;
+    }
+
+    /**
+     * Loads the blocked item and object options, indexed by {@link OptionCategory} ordinal. They are stored
+     * as comma-separated {@code id:option} pairs.
+     * <p>
+     * Item options used to be stored for inventory and worn items together. Until worn item options are
+     * stored, they start out as a copy of the item options, so blocks of worn items stay blocked. Items
+     * used to be stored by their own id instead of their base item, those are mapped when loading.
+     */
+    IntHashSet[] loadBlockedOptions() {
+        IntHashSet[] options = RuleSnapshot.emptyBlockedOptions();
+
+        for (OptionCategory category : OptionCategory.values()) {
+            String blocked = configManager.getConfiguration(CONFIG_GROUP, category.getConfigKey());
+
+            if (blocked == null && category == OptionCategory.WORN) {
+                blocked = configManager.getConfiguration(CONFIG_GROUP, OptionCategory.ITEM.getConfigKey());
+            }
+
+            if (blocked == null) {
+                continue;
+            }
+
+            List<Integer> keys = new ArrayList<>();
+
+            for (String s : blocked.split(",")) {
+                String[] idAndOption = s.trim().split(":");
+
+                if (idAndOption.length != 2) {
+                    continue;
+                }
+
+                try {
+                    int id = Integer.parseInt(idAndOption[0]);
+                    int option = Integer.parseInt(idAndOption[1]);
+
+                    if (id > 0 && option > 0 && option <= OptionCategory.MAX_OPTION) {
+                        keys.add(category.baseKey(OptionCategory.key(id, option)));
+                    }
+                } catch (NumberFormatException ignored) {
+                    // Edited by hand, drop it
+                }
+            }
+
+            options[category.ordinal()] = IntHashSet.of(keys.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        return options;
+    }
+
+    /**
+     * Loads and compiles all profiles, and returns the rules of the active profile or null if there is none.
+     * Profiles that can't be decoded are left out.
+     */
+    RuleSnapshot loadProfiles() {
+        profiles.clear();
+        activeProfile = null;
+
+        String names = configManager.getConfiguration(CONFIG_GROUP, PROFILES_KEY);
+
+        if (names != null) {
+            for (String s : names.split(",")) {
+                String name = s.trim();
+                String profile = configManager.getConfiguration(CONFIG_GROUP, PROFILE_KEY_PREFIX + name);
+
+                if (name.isEmpty() || profile == null) {
+                    continue;
+                }
+
+                try {
+                    profiles.put(name, ProfileCodec.decode(profile));
+                } catch (IllegalArgumentException ignored) {
+                    // Stored by a newer version or edited by hand, drop it
+                }
+            }
+        }
+
+        activeProfile = findProfile(configManager.getConfiguration(CONFIG_GROUP, ACTIVE_PROFILE_KEY));
+        return activeProfile == null ? null : profiles.get(activeProfile);
+    }
+
+    /**
+     * Stored name of the profile, or null if there is no profile with that name.
+     */
+    String findProfile(String name) {
+        if (name == null || !profiles.containsKey(name)) {
+            return null;
+        }
+
+        return profiles.ceilingKey(name);
+    }
+
+    Set<String> getProfileNames() {
+        return profiles.keySet();
+    }
+
+    String getActiveProfile() {
+        return activeProfile;
+    }
+
+    /**
+     * The profile after the active one in name order, wrapping around, or null if there are no profiles.
+     */
+    String getNextProfile() {
+        if (profiles.isEmpty()) {
+            return null;
+        }
+
+        String next = activeProfile == null ? null : profiles.higherKey(activeProfile);
+        return next != null ? next : profiles.firstKey();
+    }
+
+    /**
+     * Stores the rules as a profile and makes it the active profile, replacing a profile with the same name.
+     */
+    void saveProfile(String name, RuleSnapshot rules) {
+        flush(rules);
+
+        String existing = findProfile(name);
+
+        if (existing != null) {
+            profiles.remove(existing);
+            configManager.unsetConfiguration(CONFIG_GROUP, PROFILE_KEY_PREFIX + existing);
+        }
+
+        profiles.put(name, rules);
+        activeProfile = name;
+
+        configManager.setConfiguration(CONFIG_GROUP, PROFILE_KEY_PREFIX + name, ProfileCodec.encode(rules));
+        configManager.setConfiguration(CONFIG_GROUP, PROFILES_KEY, String.join(",", profiles.keySet()));
+        configManager.setConfiguration(CONFIG_GROUP, ACTIVE_PROFILE_KEY, name);
+    }
+
+    /**
+     * Deletes the profile. When it is the active one, the current rules are kept and written to the block
+     * list keys again.
+     *
+     * @return whether there was such a profile
+     */
+    boolean deleteProfile(String name) {
+        String profile = findProfile(name);
+
+        if (profile == null) {
+            return false;
+        }
+
+        profiles.remove(profile);
+        configManager.unsetConfiguration(CONFIG_GROUP, PROFILE_KEY_PREFIX + profile);
+        configManager.setConfiguration(CONFIG_GROUP, PROFILES_KEY, String.join(",", profiles.keySet()));
+
+        if (profile.equals(activeProfile)) {
+            activeProfile = null;
+            profileDirty = false;
+            configManager.unsetConfiguration(CONFIG_GROUP, ACTIVE_PROFILE_KEY);
+
+            Arrays.fill(dirtySpellbooks, true);
+            Arrays.fill(dirtyOptionCategories, true);
+            ticksSinceChange = 0;
+        }
+
+        return true;
+    }
+
+    /**
+     * Makes the profile the active one and returns its compiled rules, or null if there is no such profile.
+     * Pending changes of the current rules are written first, the new settings are written later with the
+     * other pending changes.
+     */
+    RuleSnapshot switchProfile(String name, RuleSnapshot currentRules) {
+        String profile = findProfile(name);
+
+        if (profile == null) {
+            return null;
+        }
+
+        flush(currentRules);
+
+        activeProfile = profile;
+        profileSettingsDirty = true;
+        ticksSinceChange = 0;
+
+        return profiles.get(profile);
+    }
+
+    /**
+     * Marks a settings change, which is stored in the active profile.
+     */
+    void markProfileDirty() {
+        if (activeProfile != null) {
+            profileDirty = true;
+            ticksSinceChange = 0;
+        }
+    }
+
+    void markBlockedTeleportsDirty(Spellbook spellbook) {
+        dirtySpellbooks[spellbook.ordinal()] = true;
+        ticksSinceChange = 0;
+    }
+
+    void markBlockedOptionsDirty(OptionCategory category) {
+        dirtyOptionCategories[category.ordinal()] = true;
+        ticksSinceChange = 0;
+    }
+
+    void markTriggerSpellsDirty() {
+        triggerSpellsDirty = true;
+        ticksSinceChange = 0;
+    }
+
+    /**
+     * Marks all block lists and the trigger spells, after they were replaced as a whole.
+     */
+    void markBlockListsDirty() {
+        Arrays.fill(dirtySpellbooks, true);
+        Arrays.fill(dirtyOptionCategories, true);
+        triggerSpellsDirty = true;
+        ticksSinceChange = 0;
+    }
+
+    /**
+     * Called every game tick, writes the pending changes once they have settled.
+     */
+    void tick(RuleSnapshot rules) {
+        if (ticksSinceChange == IDLE) {
+            return;
+        }
+
+        if (++ticksSinceChange >= FLUSH_DELAY_TICKS) {
+            flush(rules);
+        }
+    }
+
+    /**
+     * Writes all pending changes right away.
+     */
+    void flush(RuleSnapshot rules) {
+        if (ticksSinceChange == IDLE) {
+            return;
+        }
+
+        boolean profileChanged = profileDirty || triggerSpellsDirty;
+        profileDirty = false;
+
+        for (Spellbook spellbook : Spellbook.values()) {
+            if (dirtySpellbooks[spellbook.ordinal()]) {
+                dirtySpellbooks[spellbook.ordinal()] = false;
+                profileChanged = true;
+
+                if (activeProfile == null) {
+                    writeBlockedTeleports(spellbook, rules.getBlockedTeleportMask(spellbook));
+                }
+            }
+        }
+
+        for (OptionCategory category : OptionCategory.values()) {
+            if (dirtyOptionCategories[category.ordinal()]) {
+                dirtyOptionCategories[category.ordinal()] = false;
+                profileChanged = true;
+
+                if (activeProfile == null) {
+                    writeBlockedOptions(category, rules.getBlockedOptions(category));
+                }
+            }
+        }
+
+        if (triggerSpellsDirty || profileSettingsDirty) {
+            triggerSpellsDirty = false;
+            configManager.setConfiguration(CONFIG_GROUP, CUSTOM_TRIGGER_SPELLS_KEY, rules.getTriggerSpells().format());
+        }
+
+        if (profileSettingsDirty) {
+            profileSettingsDirty = false;
+            writeSettings(rules);
+            configManager.setConfiguration(CONFIG_GROUP, ACTIVE_PROFILE_KEY, activeProfile);
+        }
+
+        if (profileChanged && activeProfile != null) {
+            profiles.put(activeProfile, rules);
+            configManager.setConfiguration(CONFIG_GROUP, PROFILE_KEY_PREFIX + activeProfile, ProfileCodec.encode(rules));
+        }
+
+        ticksSinceChange = IDLE;
+    }
+
+    /**
+     * Writes the settings of the rules to the config items, after the trigger spells so the last
+     * {@code ConfigChanged} sees all of them.
+     */
+    private void writeSettings(RuleSnapshot rules) {
+        // Keep the delay in seconds if it still gives the same window
+        int windowTicks = rules.getDefaultWindowTicks();
+
+        if (TriggerSpellList.secondsToTicks(config.activationDelaySeconds()) == windowTicks) {
+            windowTicks = 0;
+        }
+
+        configManager.setConfiguration(CONFIG_GROUP, "enableCustomTriggerSpells", String.valueOf(rules.isTriggerSpellsEnabled()));
+        configManager.setConfiguration(CONFIG_GROUP, "activationDelayTicks", String.valueOf(windowTicks));
+        configManager.setConfiguration(CONFIG_GROUP, "enableModifierKey", String.valueOf(rules.isModifierKeyEnabled()));
+        configManager.setConfiguration(CONFIG_GROUP, "modifierKey", rules.getModifierKey().name());
+        configManager.setConfiguration(CONFIG_GROUP, "allowRightClickWithoutModifier", String.valueOf(rules.isRightClickAllowed()));
+        configManager.setConfiguration(CONFIG_GROUP, "triggerProximityPixels", String.valueOf(rules.getProximityPixels()));
+        configManager.setConfiguration(CONFIG_GROUP, "triggerProximityTicks", String.valueOf(rules.getProximityTicks()));
+    }
+
+    private void writeBlockedTeleports(Spellbook spellbook, long mask) {
+        StringJoiner teleports = new StringJoiner(",");
+
+        for (TeleportSpell spell : TeleportSpell.values()) {
+            if (spell.getSpellbook() == spellbook && (mask & spell.getBit()) != 0) {
+                teleports.add(spell.name());
+            }
+        }
+
+        configManager.setConfiguration(CONFIG_GROUP, BLOCKED_TELEPORTS_KEY_PREFIX + spellbook.getKey(), teleports.toString());
+    }
+
+    private void writeBlockedOptions(OptionCategory category, IntHashSet keys) {
+        StringJoiner options = new StringJoiner(",");
+
+        for (int key : keys.toArray()) {
+            options.add(OptionCategory.idOf(key) + ":" + OptionCategory.optionOf(key));
+        }
+
+        configManager.setConfiguration(CONFIG_GROUP, category.getConfigKey(), options.toString());
+    }
+}
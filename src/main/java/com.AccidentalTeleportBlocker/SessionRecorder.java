@@ -0,0 +1,350 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.api.Item;
+import net.runelite.api.MenuEntry;
+import net.runelite.api.Skill;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the events the plugin handles to a compact binary file, so a session can be replayed through
+ * the plugin without the game client.
+ * <p>
+ * A recording starts with the rules and spellbook at the time recording started, followed by one record
+ * per event: a type byte and its fields. Game ticks are records of their own, so the tick of an event is
+ * the number of tick records before it. Strings are written once and referred to by index after that.
+ * Writes are buffered and only reach the disk when the buffer is full or the recording stops.
+ * <p>
+ * Not thread-safe, only use it from the client thread.
+ */
+class SessionRecorder {
+
+    static final String CONFIG_KEY = "recordSessions";
+
+    static final int MAGIC = 0x41544252; // "ATBR"
+    // 2 added blocked item and object options and menu entry ids, 3 profile switches, 4 magic xp and cast effects,
+    // 5 worn item options, 6 proximity settings and spellbook slots
+    static final int VERSION = 6;
+
+    static final int TICK = 0;
+    static final int MENU_OPENED = 1;
+    static final int CLICK = 2;
+    static final int STAT_CHANGED = 3;
+    static final int VARBIT_CHANGED = 4;
+    static final int RULES_CHANGED = 5;
+    static final int PROFILE_SWITCHED = 6;
+    static final int ANIMATION_CHANGED = 7;
+    static final int GRAPHIC_CHANGED = 8;
+    static final int INVENTORY_CHANGED = 9;
+    static final int SPELLBOOK_SLOTS = 10;
+
+    static final int SHIFT_HELD = 1;
+    static final int CTRL_HELD = 2;
+    static final int MENU_OPEN = 4;
+
+    static final File RECORDING_DIR = AccidentalTeleportBlockerPlugin.PLUGIN_DIR;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private DataOutputStream out;
+    private String error;
+
+    boolean isRecording() {
+        return out != null;
+    }
+
+    /**
+     * Starts a new recording file, stopping the current recording first.
+     */
+    void start(RuleSnapshot rules, Spellbook spellbook) {
+        stop();
+
+        try {
+            if (!RECORDING_DIR.isDirectory() && !RECORDING_DIR.mkdirs()) {
+                throw new IOException("Unable to create " + RECORDING_DIR);
+            }
+
+            File file = new File(RECORDING_DIR, "session-" + System.currentTimeMillis() + ".atbrec");
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(spellbook.ordinal());
+            writeRules(rules);
+
+            for (Spellbook book : Spellbook.values()) {
+                out.writeLong(rules.getBlockedTeleportMask(book));
+            }
+
+            for (OptionCategory category : OptionCategory.values()) {
+                int[] keys = rules.getBlockedOptions(category).toArray();
+                writeVarInt(keys.length);
+
+                for (int key : keys) {
+                    writeVarInt(key);
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    void stop() {
+        if (out == null) {
+            return;
+        }
+
+        try {
+            out.close();
+        } catch (IOException e) {
+            error = e.getMessage();
+        }
+
+        out = null;
+        stringIds.clear();
+    }
+
+    /**
+     * Returns the error that stopped the recording once, or null if there was none.
+     */
+    String takeError() {
+        String e = error;
+        error = null;
+        return e;
+    }
+
+    void recordTick() {
+        try {
+            out.writeByte(TICK);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    void recordMenuOpened(MenuEntry[] entries, boolean shiftHeld) {
+        try {
+            out.writeByte(MENU_OPENED);
+            out.writeByte(shiftHeld ? SHIFT_HELD : 0);
+            writeVarInt(entries.length);
+
+            for (MenuEntry entry : entries) {
+                writeMenuEntry(entry);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    void recordClick(MenuEntry entry, int keyState, BlockDecision decision) {
+        try {
+            out.writeByte(CLICK);
+            writeMenuEntry(entry);
+            out.writeByte(keyState);
+            out.writeByte(decision.ordinal());
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    void recordStatChanged(Skill skill, int xp) {
+        try {
+            out.writeByte(STAT_CHANGED);
+            writeString(skill.name());
+            writeVarInt(xp);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records an animation of the local player.
+     */
+    void recordAnimationChanged(int animation) {
+        try {
+            out.writeByte(ANIMATION_CHANGED);
+            out.writeInt(animation);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records a graphic of the local player.
+     */
+    void recordGraphicChanged(int graphic) {
+        try {
+            out.writeByte(GRAPHIC_CHANGED);
+            out.writeInt(graphic);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records the runes in the inventory, the other items don't matter to the plugin.
+     */
+    void recordInventoryChanged(Item[] items) {
+        try {
+            int runes = 0;
+
+            for (Item item : items) {
+                if (CastCorrelator.isRune(item.getId())) {
+                    runes++;
+                }
+            }
+
+            out.writeByte(INVENTORY_CHANGED);
+            writeVarInt(runes);
+
+            for (Item item : items) {
+                if (CastCorrelator.isRune(item.getId())) {
+                    writeVarInt(item.getId());
+                    writeVarInt(item.getQuantity());
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    void recordVarbitChanged(int varbitId, int value) {
+        try {
+            out.writeByte(VARBIT_CHANGED);
+            writeVarInt(varbitId);
+            writeVarInt(value);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records the names and positions of the spellbook slots after the spell index was built, so a replay
+     * measures the same distances to trigger spells.
+     */
+    void recordSpellbookSlots(SpellIndex index) {
+        try {
+            List<SpellIndex.Spell> slots = new ArrayList<>();
+
+            for (int child = 0; child < SpellIndex.MAX_CHILDREN; child++) {
+                SpellIndex.Spell spell = index.get(SpellIndex.SPELLBOOK_GROUP_ID << 16 | child);
+
+                if (spell != null && spell.hasPosition()) {
+                    slots.add(spell);
+                }
+            }
+
+            out.writeByte(SPELLBOOK_SLOTS);
+            writeVarInt(slots.size());
+
+            for (SpellIndex.Spell spell : slots) {
+                writeVarInt(spell.getWidgetId() & 0xFFFF);
+                writeString(spell.getDisplayName());
+                out.writeShort(spell.getX());
+                out.writeShort(spell.getY());
+                out.writeShort(spell.getWidth());
+                out.writeShort(spell.getHeight());
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records the settings and trigger spells after a config change. Blocked teleports and options are not
+     * included, those changes are replayed from the recorded menu clicks.
+     */
+    void recordRulesChanged(RuleSnapshot rules) {
+        try {
+            out.writeByte(RULES_CHANGED);
+            writeRules(rules);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records a switch to a profile together with all of its rules, so it can be replayed without the profile.
+     */
+    void recordProfileSwitched(String name, RuleSnapshot rules) {
+        try {
+            out.writeByte(PROFILE_SWITCHED);
+            writeString(name);
+            out.writeUTF(ProfileCodec.encode(rules));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void writeRules(RuleSnapshot rules) throws IOException {
+        out.writeBoolean(rules.isModifierKeyEnabled());
+        out.writeByte(rules.getModifierKey().ordinal());
+        out.writeBoolean(rules.isRightClickAllowed());
+        out.writeBoolean(rules.isTriggerSpellsEnabled());
+        writeVarInt(rules.getDefaultWindowTicks());
+        out.writeUTF(rules.getTriggerSpells().format());
+        writeVarInt(rules.getProximityPixels());
+        writeVarInt(rules.getProximityTicks());
+    }
+
+    private void writeMenuEntry(MenuEntry entry) throws IOException {
+        writeString(entry.getOption());
+        writeString(entry.getTarget());
+        writeVarInt(entry.getType().getId());
+        out.writeInt(entry.getIdentifier());
+        out.writeInt(entry.getItemId());
+        out.writeInt(entry.getParam1());
+    }
+
+    /**
+     * Writes the id of a string, followed by the string itself the first time it is written.
+     */
+    private void writeString(String s) throws IOException {
+        if (s == null) {
+            s = "";
+        }
+
+        Integer id = stringIds.get(s);
+
+        if (id != null) {
+            writeVarInt(id);
+            return;
+        }
+
+        id = stringIds.size();
+        stringIds.put(s, id);
+        writeVarInt(id);
+        out.writeUTF(s);
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte(value);
+    }
+
+    private void fail(IOException e) {
+        error = e.getMessage();
+
+        try {
+            if (out != null) {
+                out.close();
+            }
+        } catch (IOException ignored) {
+            // Already failed
+        }
+
+        out = null;
+        stringIds.clear();
+    }
+}
@@ -0,0 +1,190 @@
+package com.AccidentalTeleportBlocker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Block lists and trigger spells shared by the clients on one computer, through a small memory-mapped file.
+ * <p>
+ * The file starts with a header holding a sequence number and the length of the rules, followed by the
+ * rules as written by {@link ProfileCodec#toBytes(RuleSnapshot)}. Every client maps the same file, so a
+ * change written by one client is seen by the others without reading the file: checking for a change is
+ * a single read of the sequence number from the mapping, and a changed file is decoded straight from it.
+ * <p>
+ * Writers take a lock on the file, so writes from different clients don't mix. The sequence number is odd
+ * while a write is under way, and readers that see an odd or changed sequence number around their read
+ * drop what they read and try again later. The last write wins. The sequence number is written with release
+ * and read with acquire semantics, with fences between it and the rules, so neither the JIT nor the CPU moves
+ * reads or writes of the rules past it.
+ * <p>
+ * Not thread-safe, only use it from the client thread.
+ */
+final class SharedRuleFile implements AutoCloseable {
+
+    /**
+     * Sequence number of a file no rules were written to yet
+     */
+    static final long EMPTY = 0L;
+
+    static final int SIZE = 64 * 1024;
+
+    private static final int MAGIC = 0x41544253; // "ATBS", unlike the "ATBR" of session recordings
+    private static final int FORMAT = 1;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int FORMAT_OFFSET = 4;
+    private static final int SEQUENCE_OFFSET = 8;
+    private static final int LENGTH_OFFSET = 16;
+    private static final int HEADER_SIZE = 20;
+
+    /**
+     * Atomic access to the sequence number, in the big-endian order of the other header fields
+     */
+    private static final VarHandle SEQUENCE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    /**
+     * Maps the file, creating it if needed.
+     *
+     * @throws IOException if the file can't be mapped or was created by an unknown version
+     */
+    SharedRuleFile(File file) throws IOException {
+        File dir = file.getParentFile();
+
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+
+            try (FileLock ignored = channel.lock()) {
+                if (buffer.getInt(MAGIC_OFFSET) == 0) {
+                    buffer.putInt(FORMAT_OFFSET, FORMAT);
+                    buffer.putInt(MAGIC_OFFSET, MAGIC);
+                } else if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(FORMAT_OFFSET) != FORMAT) {
+                    throw new IOException(file + " was not written by this version of the plugin");
+                }
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Changes with every write, {@link #EMPTY} until the first one.
+     */
+    long getSequence() {
+        return (long) SEQUENCE.getAcquire(buffer, SEQUENCE_OFFSET);
+    }
+
+    /**
+     * The rules in the file, or null if there are none or a write was under way.
+     */
+    RuleSnapshot read() {
+        long sequence = getSequence();
+
+        if (sequence == EMPTY || (sequence & 1) != 0) {
+            return null;
+        }
+
+        int length = buffer.getInt(LENGTH_OFFSET);
+
+        if (length <= 0 || length > SIZE - HEADER_SIZE) {
+            return null;
+        }
+
+        ByteBuffer rules = buffer.duplicate();
+        rules.position(HEADER_SIZE).limit(HEADER_SIZE + length);
+
+        try {
+            RuleSnapshot snapshot = ProfileCodec.read(new ByteBufferInputStream(rules));
+
+            // The rules are read before the sequence number is checked again
+            VarHandle.acquireFence();
+            return getSequence() == sequence ? snapshot : null;
+        } catch (IllegalArgumentException e) {
+            // Torn by a write, or the write was torn by a crash and the next write fixes it
+            return null;
+        }
+    }
+
+    /**
+     * Writes the rules, waiting for other clients that are writing.
+     *
+     * @return the sequence number of the write
+     * @throws IOException if the rules don't fit or the file can't be locked
+     */
+    long write(RuleSnapshot rules) throws IOException {
+        byte[] bytes = ProfileCodec.toBytes(rules);
+
+        if (bytes.length > SIZE - HEADER_SIZE) {
+            throw new IOException("Too many blocks to share");
+        }
+
+        try (FileLock ignored = channel.lock()) {
+            // Odd while writing, also after a writer crashed halfway
+            long writing = (getSequence() + 1) | 1;
+            SEQUENCE.setOpaque(buffer, SEQUENCE_OFFSET, writing);
+
+            // Readers see the odd sequence number before any of the new rules
+            VarHandle.storeStoreFence();
+
+            ByteBuffer target = buffer.duplicate();
+            target.position(HEADER_SIZE);
+            target.put(bytes);
+            buffer.putInt(LENGTH_OFFSET, bytes.length);
+
+            SEQUENCE.setRelease(buffer, SEQUENCE_OFFSET, writing + 1);
+            return writing + 1;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The mapping itself is released once the buffer is garbage collected
+        channel.close();
+    }
+
+    /**
+     * Reads from the mapping without copying it to an array first.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
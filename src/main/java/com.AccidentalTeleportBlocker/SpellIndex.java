@@ -0,0 +1,224 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.api.Client;
+import net.runelite.api.widgets.Widget;
+import net.runelite.client.util.Text;
+
+import java.util.Arrays;
+
+/**
+ * Spells of the active spellbook by their spellbook widget child. The index is built from the names and
+ * positions of the spellbook widgets when the spellbook interface loads or is redrawn, the client is resized or
+ * the spellbook changes, so the menu handlers find the spell behind an entry and the position of its slot from
+ * its widget id with a single array read instead of parsing the color-tagged menu target or walking the widgets.
+ * <p>
+ * Widgets that weren't loaded when the index was built are added from the menu target the first time an
+ * entry for them is seen, with the position of the widget if it is loaded by then.
+ * <p>
+ * Not thread-safe, only use it from the client thread.
+ */
+final class SpellIndex {
+
+    static final int SPELLBOOK_GROUP_ID = 218; // Spellbook interface from the game
+
+    static final int MAX_CHILDREN = 512;
+
+    /**
+     * A spell as shown on a spellbook widget.
+     */
+    static final class Spell {
+        private final int widgetId;
+        private final Spellbook spellbook;
+        private final String rawName;
+        private final String name;
+        private final String displayName;
+        private final TeleportSpell teleport;
+        private final boolean teleportName;
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+
+        private Spell(int widgetId, Spellbook spellbook, String rawName, Widget widget) {
+            this.widgetId = widgetId;
+            this.spellbook = spellbook;
+            this.rawName = rawName;
+            this.name = MenuTargetNormalizer.normalize(rawName);
+            this.displayName = Text.removeTags(rawName).trim();
+            this.teleport = TeleportSpell.fromNameOrAlias(spellbook, name);
+            this.teleportName = teleport != null || name.contains("teleport") || name.contains("tele group");
+            this.x = widget != null ? widget.getRelativeX() : 0;
+            this.y = widget != null ? widget.getRelativeY() : 0;
+            this.width = widget != null ? widget.getWidth() : 0;
+            this.height = widget != null ? widget.getHeight() : 0;
+        }
+
+        int getWidgetId() {
+            return widgetId;
+        }
+
+        Spellbook getSpellbook() {
+            return spellbook;
+        }
+
+        /**
+         * Normalized name as produced by {@link MenuTargetNormalizer}.
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Name as shown in the game, without color tags.
+         */
+        String getDisplayName() {
+            return displayName;
+        }
+
+        /**
+         * The blockable teleport, or null if this spell isn't one.
+         */
+        TeleportSpell getTeleport() {
+            return teleport;
+        }
+
+        /**
+         * Whether this spell teleports, including teleports that can't be blocked. These never become trigger spells.
+         */
+        boolean isTeleport() {
+            return teleportName;
+        }
+
+        /**
+         * Position and size of the spellbook widget, relative to its parent. All 0 without a {@link #hasPosition() position}.
+         */
+        int getX() {
+            return x;
+        }
+
+        int getY() {
+            return y;
+        }
+
+        int getWidth() {
+            return width;
+        }
+
+        int getHeight() {
+            return height;
+        }
+
+        /**
+         * Whether the position of the spellbook widget is known. Spells indexed from a menu target have no position
+         * if their widget wasn't loaded either.
+         */
+        boolean hasPosition() {
+            return width > 0 && height > 0;
+        }
+
+        /**
+         * Whether this spell was indexed from the widget as it is now, with the same name and position.
+         */
+        private boolean isShownOn(Widget widget, String rawName) {
+            return this.rawName.equals(rawName) && x == widget.getRelativeX() && y == widget.getRelativeY()
+                    && width == widget.getWidth() && height == widget.getHeight();
+        }
+
+        /**
+         * Whether the spells are on neighbouring slots of the spellbook, including diagonally.
+         */
+        boolean isNextTo(Spell other) {
+            if (!hasPosition() || !other.hasPosition() || widgetId == other.widgetId) {
+                return false;
+            }
+
+            int dx = Math.abs(2 * x + width - 2 * other.x - other.width);
+            int dy = Math.abs(2 * y + height - 2 * other.y - other.height);
+
+            // Twice the distance between the centers, within one and a half slot
+            return dx <= 3 * width && dy <= 3 * height;
+        }
+
+        /**
+         * Pixels between the edges of the spellbook slots, 0 when they touch. Only for spells with a position.
+         */
+        int distanceTo(Spell other) {
+            int dx = Math.max(0, Math.max(other.x - x - width, x - other.x - other.width));
+            int dy = Math.max(0, Math.max(other.y - y - height, y - other.y - other.height));
+            return (int) Math.sqrt(dx * dx + dy * dy);
+        }
+    }
+
+    private final Spell[] spells = new Spell[MAX_CHILDREN];
+    private Spellbook spellbook = Spellbook.STANDARD;
+
+    /**
+     * Indexes the spellbook widgets that are loaded, replacing the current index. Spells whose widget did not
+     * change are kept.
+     *
+     * @return whether any spell or slot changed
+     */
+    boolean build(Client client, Spellbook spellbook) {
+        boolean switched = spellbook != this.spellbook;
+        boolean changed = switched;
+        this.spellbook = spellbook;
+
+        for (int child = 0; child < MAX_CHILDREN; child++) {
+            Widget widget = client.getWidget(SPELLBOOK_GROUP_ID, child);
+            String name = widget != null ? widget.getName() : null;
+            Spell spell = spells[child];
+
+            if (name == null || name.isEmpty()) {
+                changed |= spell != null;
+                spells[child] = null;
+            } else if (switched || spell == null || !spell.isShownOn(widget, name)) {
+                put(child, name, widget);
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * The spell on the widget, or null if the widget is not a spellbook widget or was not indexed.
+     */
+    Spell get(int widgetId) {
+        int child = widgetId & 0xFFFF;
+
+        if ((widgetId >>> 16) != SPELLBOOK_GROUP_ID || child >= MAX_CHILDREN) {
+            return null;
+        }
+
+        return spells[child];
+    }
+
+    /**
+     * The spell on the widget, indexing it by the menu target if it was not indexed yet. Returns null if the
+     * widget is not a spellbook widget.
+     */
+    Spell resolve(Client client, int widgetId, String target) {
+        int child = widgetId & 0xFFFF;
+
+        if ((widgetId >>> 16) != SPELLBOOK_GROUP_ID || child >= MAX_CHILDREN) {
+            return null;
+        }
+
+        Spell spell = spells[child];
+        return spell != null ? spell : put(child, target == null ? "" : target, client.getWidget(widgetId));
+    }
+
+    /**
+     * Empties the index, spells seen from now on belong to the given spellbook.
+     */
+    void reset(Spellbook spellbook) {
+        Arrays.fill(spells, null);
+        this.spellbook = spellbook;
+    }
+
+    private Spell put(int child, String rawName, Widget widget) {
+        Spell spell = new Spell(SPELLBOOK_GROUP_ID << 16 | child, spellbook, rawName, widget);
+        spells[child] = spell;
+        return spell;
+    }
+}
@@ -0,0 +1,295 @@
+package com.AccidentalTeleportBlocker;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable matcher that resolves a normalized spell name against the trigger spell list in a single
+ * pass over the name.
+ * <p>
+ * Two automatons are compiled when the lists change:
+ * <ul>
+ * <li>An Aho-Corasick automaton over the trigger spells, answering which of them occur inside the
+ * spell name.</li>
+ * <li>A suffix automaton over all trigger spells, answering whether the spell name occurs inside
+ * any trigger spell (the other direction of the trigger check).</li>
+ * </ul>
+ * Matching costs one table lookup per character of the spell name, no matter how long the lists
+ * are, and does not allocate.
+ */
+final class SpellPatternMatcher {
+
+    static final int NO_MATCH = -1;
+
+    private static final SpellPatternMatcher EMPTY = new SpellPatternMatcher(List.of());
+
+    // a-z, space, any other character and the separator used between patterns in the suffix automaton
+    private static final int SPACE = 26;
+    private static final int OTHER = 27;
+    private static final int SEPARATOR = 28;
+    private static final int ALPHABET_SIZE = 29;
+
+    private final Set<String> triggerSpells;
+
+    // Aho-Corasick automaton, stored as a complete transition table
+    private final int[] acTransitions;
+    private final int[] acTrigger;
+
+    // Suffix automaton over all trigger spells joined by separators
+    private final int[] saTransitions;
+    private final int[] saTrigger;
+
+    /**
+     * @param triggerSpells normalized trigger spell names, the index in this list is the trigger id
+     */
+    SpellPatternMatcher(List<String> triggerSpells) {
+        this.triggerSpells = Set.copyOf(triggerSpells);
+
+        AhoCorasickBuilder ac = new AhoCorasickBuilder();
+        for (int i = 0; i < triggerSpells.size(); i++) {
+            ac.add(triggerSpells.get(i), i);
+        }
+
+        ac.build();
+        this.acTransitions = ac.transitions;
+        this.acTrigger = ac.trigger;
+
+        SuffixAutomatonBuilder sa = new SuffixAutomatonBuilder(triggerSpells);
+        this.saTransitions = sa.transitions;
+        this.saTrigger = sa.trigger;
+    }
+
+    static SpellPatternMatcher empty() {
+        return EMPTY;
+    }
+
+    Set<String> getTriggerSpells() {
+        return triggerSpells;
+    }
+
+    /**
+     * Matches a normalized spell name and returns the id of the matching trigger, or {@link #NO_MATCH}.
+     * <p>
+     * A trigger matches when the spell name contains the trigger spell or the trigger spell contains
+     * the spell name.
+     */
+    int match(String spellName) {
+        int length = spellName.length();
+        int acState = 0;
+        int saState = length == 0 ? NO_MATCH : 0;
+        int trigger = NO_MATCH;
+
+        for (int i = 0; i < length; i++) {
+            int symbol = symbolOf(spellName.charAt(i));
+
+            acState = acTransitions[acState * ALPHABET_SIZE + symbol];
+
+            if (trigger == NO_MATCH) {
+                trigger = acTrigger[acState];
+            }
+
+            if (saState != NO_MATCH) {
+                saState = saTransitions[saState * ALPHABET_SIZE + symbol];
+            }
+        }
+
+        if (trigger == NO_MATCH && saState != NO_MATCH) {
+            trigger = saTrigger[saState];
+        }
+
+        return trigger;
+    }
+
+    private static int symbolOf(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        }
+
+        return c == ' ' ? SPACE : OTHER;
+    }
+
+    private static final class AhoCorasickBuilder {
+        private int[] transitions = new int[16 * ALPHABET_SIZE];
+        private int[] trigger = new int[16];
+        private int size;
+
+        AhoCorasickBuilder() {
+            Arrays.fill(transitions, NO_MATCH);
+            newNode();
+        }
+
+        void add(String pattern, int triggerId) {
+            if (pattern.isEmpty()) {
+                return;
+            }
+
+            int node = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int index = node * ALPHABET_SIZE + symbolOf(pattern.charAt(i));
+
+                if (transitions[index] == NO_MATCH) {
+                    int child = newNode();
+                    transitions[index] = child;
+                }
+
+                node = transitions[index];
+            }
+
+            if (trigger[node] == NO_MATCH) {
+                trigger[node] = triggerId;
+            }
+        }
+
+        /**
+         * Computes the failure links breadth-first and turns the trie into a complete transition table,
+         * inheriting the outputs of each node's failure state.
+         */
+        void build() {
+            int[] fail = new int[size];
+            int[] queue = new int[size];
+            int head = 0;
+            int tail = 0;
+
+            for (int symbol = 0; symbol < ALPHABET_SIZE; symbol++) {
+                int child = transitions[symbol];
+
+                if (child == NO_MATCH) {
+                    transitions[symbol] = 0;
+                } else {
+                    fail[child] = 0;
+                    queue[tail++] = child;
+                }
+            }
+
+            while (head < tail) {
+                int node = queue[head++];
+
+                if (trigger[node] == NO_MATCH) {
+                    trigger[node] = trigger[fail[node]];
+                }
+
+                for (int symbol = 0; symbol < ALPHABET_SIZE; symbol++) {
+                    int index = node * ALPHABET_SIZE + symbol;
+                    int child = transitions[index];
+                    int fallback = transitions[fail[node] * ALPHABET_SIZE + symbol];
+
+                    if (child == NO_MATCH) {
+                        transitions[index] = fallback;
+                    } else {
+                        fail[child] = fallback;
+                        queue[tail++] = child;
+                    }
+                }
+            }
+
+            transitions = Arrays.copyOf(transitions, size * ALPHABET_SIZE);
+            trigger = Arrays.copyOf(trigger, size);
+        }
+
+        private int newNode() {
+            if (size == trigger.length) {
+                int capacity = size * 2;
+                int oldLength = transitions.length;
+
+                transitions = Arrays.copyOf(transitions, capacity * ALPHABET_SIZE);
+                Arrays.fill(transitions, oldLength, transitions.length, NO_MATCH);
+                trigger = Arrays.copyOf(trigger, capacity);
+            }
+
+            trigger[size] = NO_MATCH;
+            return size++;
+        }
+    }
+
+    private static final class SuffixAutomatonBuilder {
+        private final int[] transitions;
+        private final int[] trigger;
+
+        SuffixAutomatonBuilder(List<String> patterns) {
+            int textLength = 0;
+            for (String pattern : patterns) {
+                textLength += pattern.length() + 1;
+            }
+
+            int capacity = Math.max(2, textLength * 2);
+            int[] next = new int[capacity * ALPHABET_SIZE];
+            int[] link = new int[capacity];
+            int[] length = new int[capacity];
+            int[] owner = new int[capacity];
+
+            Arrays.fill(next, NO_MATCH);
+            link[0] = NO_MATCH;
+            owner[0] = NO_MATCH;
+
+            int size = 1;
+            int last = 0;
+
+            for (int id = 0; id < patterns.size(); id++) {
+                String pattern = patterns.get(id);
+
+                for (int i = 0; i <= pattern.length(); i++) {
+                    int symbol = i < pattern.length() ? symbolOf(pattern.charAt(i)) : SEPARATOR;
+                    int current = size++;
+
+                    length[current] = length[last] + 1;
+                    owner[current] = symbol == SEPARATOR ? NO_MATCH : id;
+
+                    int p = last;
+                    while (p != NO_MATCH && next[p * ALPHABET_SIZE + symbol] == NO_MATCH) {
+                        next[p * ALPHABET_SIZE + symbol] = current;
+                        p = link[p];
+                    }
+
+                    if (p == NO_MATCH) {
+                        link[current] = 0;
+                    } else {
+                        int q = next[p * ALPHABET_SIZE + symbol];
+
+                        if (length[p] + 1 == length[q]) {
+                            link[current] = q;
+                        } else {
+                            int clone = size++;
+
+                            System.arraycopy(next, q * ALPHABET_SIZE, next, clone * ALPHABET_SIZE, ALPHABET_SIZE);
+                            length[clone] = length[p] + 1;
+                            link[clone] = link[q];
+                            owner[clone] = NO_MATCH;
+
+                            while (p != NO_MATCH && next[p * ALPHABET_SIZE + symbol] == q) {
+                                next[p * ALPHABET_SIZE + symbol] = clone;
+                                p = link[p];
+                            }
+
+                            link[q] = clone;
+                            link[current] = clone;
+                        }
+                    }
+
+                    last = current;
+                }
+            }
+
+            // Propagate the owning trigger up the suffix links, longest states first, so every state
+            // knows a trigger spell in which its substrings occur
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+
+            Arrays.sort(order, (a, b) -> Integer.compare(length[b], length[a]));
+
+            for (int state : order) {
+                int parent = link[state];
+
+                if (parent != NO_MATCH && owner[state] != NO_MATCH
+                        && (owner[parent] == NO_MATCH || owner[state] < owner[parent])) {
+                    owner[parent] = owner[state];
+                }
+            }
+
+            this.transitions = Arrays.copyOf(next, size * ALPHABET_SIZE);
+            this.trigger = Arrays.copyOf(owner, size);
+        }
+    }
+}
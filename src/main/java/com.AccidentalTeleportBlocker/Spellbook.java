@@ -0,0 +1,36 @@
+package com.AccidentalTeleportBlocker;
+
+/**
+ * The spellbooks in the order of their value in the spellbook varbit.
+ */
+enum Spellbook {
+    STANDARD("standard"),
+    ANCIENT("ancient"),
+    LUNAR("lunar"),
+    ARCEUUS("arceuus");
+
+    static final int VARBIT = 4070; // Spellbook varbit from the game
+
+    private static final Spellbook[] VALUES = values();
+
+    private final String key;
+
+    Spellbook(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Suffix used for the per-spellbook config keys.
+     */
+    String getKey() {
+        return key;
+    }
+
+    static Spellbook fromVarbit(int value) {
+        if (value < 0 || value >= VALUES.length) {
+            return STANDARD;
+        }
+
+        return VALUES[value];
+    }
+}
@@ -0,0 +1,153 @@
+package com.AccidentalTeleportBlocker;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of all teleport spells that can be blocked. Each spell gets a small id within its spellbook,
+ * so the blocked teleports of a spellbook fit in a single {@code long} bit mask.
+ */
+enum TeleportSpell {
+    // Standard spellbook
+    LUMBRIDGE_HOME_TELEPORT(Spellbook.STANDARD, "Lumbridge Home Teleport"),
+    VARROCK_TELEPORT(Spellbook.STANDARD, "Varrock Teleport", "grand exchange"),
+    LUMBRIDGE_TELEPORT(Spellbook.STANDARD, "Lumbridge Teleport"),
+    FALADOR_TELEPORT(Spellbook.STANDARD, "Falador Teleport"),
+    TELEPORT_TO_HOUSE(Spellbook.STANDARD, "Teleport to House", "outside"),
+    CAMELOT_TELEPORT(Spellbook.STANDARD, "Camelot Teleport", "seers"),
+    KOUREND_CASTLE_TELEPORT(Spellbook.STANDARD, "Kourend Castle Teleport"),
+    ARDOUGNE_TELEPORT(Spellbook.STANDARD, "Ardougne Teleport"),
+    CIVITAS_ILLA_FORTIS_TELEPORT(Spellbook.STANDARD, "Civitas illa Fortis Teleport"),
+    WATCHTOWER_TELEPORT(Spellbook.STANDARD, "Watchtower Teleport", "yanille"),
+    TROLLHEIM_TELEPORT(Spellbook.STANDARD, "Trollheim Teleport"),
+    APE_ATOLL_TELEPORT(Spellbook.STANDARD, "Ape Atoll Teleport"),
+    TELEPORT_TO_TARGET(Spellbook.STANDARD, "Teleport to Target"),
+
+    // Ancient spellbook
+    EDGEVILLE_HOME_TELEPORT(Spellbook.ANCIENT, "Edgeville Home Teleport"),
+    PADDEWWA_TELEPORT(Spellbook.ANCIENT, "Paddewwa Teleport"),
+    SENNTISTEN_TELEPORT(Spellbook.ANCIENT, "Senntisten Teleport"),
+    KHARYRLL_TELEPORT(Spellbook.ANCIENT, "Kharyrll Teleport"),
+    LASSAR_TELEPORT(Spellbook.ANCIENT, "Lassar Teleport"),
+    DAREEYAK_TELEPORT(Spellbook.ANCIENT, "Dareeyak Teleport"),
+    CARRALLANGER_TELEPORT(Spellbook.ANCIENT, "Carrallanger Teleport"),
+    ANNAKARL_TELEPORT(Spellbook.ANCIENT, "Annakarl Teleport"),
+    GHORROCK_TELEPORT(Spellbook.ANCIENT, "Ghorrock Teleport"),
+    ANCIENT_TELEPORT_TO_TARGET(Spellbook.ANCIENT, "Teleport to Target"),
+
+    // Lunar spellbook
+    LUNAR_HOME_TELEPORT(Spellbook.LUNAR, "Lunar Home Teleport"),
+    MOONCLAN_TELEPORT(Spellbook.LUNAR, "Moonclan Teleport"),
+    TELE_GROUP_MOONCLAN(Spellbook.LUNAR, "Tele Group Moonclan"),
+    OURANIA_TELEPORT(Spellbook.LUNAR, "Ourania Teleport"),
+    WATERBIRTH_TELEPORT(Spellbook.LUNAR, "Waterbirth Teleport"),
+    TELE_GROUP_WATERBIRTH(Spellbook.LUNAR, "Tele Group Waterbirth"),
+    BARBARIAN_TELEPORT(Spellbook.LUNAR, "Barbarian Teleport"),
+    TELE_GROUP_BARBARIAN(Spellbook.LUNAR, "Tele Group Barbarian"),
+    KHAZARD_TELEPORT(Spellbook.LUNAR, "Khazard Teleport"),
+    TELE_GROUP_KHAZARD(Spellbook.LUNAR, "Tele Group Khazard"),
+    FISHING_GUILD_TELEPORT(Spellbook.LUNAR, "Fishing Guild Teleport"),
+    TELE_GROUP_FISHING_GUILD(Spellbook.LUNAR, "Tele Group Fishing Guild"),
+    CATHERBY_TELEPORT(Spellbook.LUNAR, "Catherby Teleport"),
+    TELE_GROUP_CATHERBY(Spellbook.LUNAR, "Tele Group Catherby"),
+    ICE_PLATEAU_TELEPORT(Spellbook.LUNAR, "Ice Plateau Teleport"),
+    TELE_GROUP_ICE_PLATEAU(Spellbook.LUNAR, "Tele Group Ice Plateau"),
+    LUNAR_TELEPORT_TO_TARGET(Spellbook.LUNAR, "Teleport to Target"),
+
+    // Arceuus spellbook
+    ARCEUUS_HOME_TELEPORT(Spellbook.ARCEUUS, "Arceuus Home Teleport"),
+    ARCEUUS_LIBRARY_TELEPORT(Spellbook.ARCEUUS, "Arceuus Library Teleport"),
+    DRAYNOR_MANOR_TELEPORT(Spellbook.ARCEUUS, "Draynor Manor Teleport"),
+    BATTLEFRONT_TELEPORT(Spellbook.ARCEUUS, "Battlefront Teleport"),
+    MIND_ALTAR_TELEPORT(Spellbook.ARCEUUS, "Mind Altar Teleport"),
+    RESPAWN_TELEPORT(Spellbook.ARCEUUS, "Respawn Teleport"),
+    SALVE_GRAVEYARD_TELEPORT(Spellbook.ARCEUUS, "Salve Graveyard Teleport"),
+    FENKENSTRAINS_CASTLE_TELEPORT(Spellbook.ARCEUUS, "Fenkenstrain's Castle Teleport"),
+    WEST_ARDOUGNE_TELEPORT(Spellbook.ARCEUUS, "West Ardougne Teleport"),
+    HARMONY_ISLAND_TELEPORT(Spellbook.ARCEUUS, "Harmony Island Teleport"),
+    CEMETERY_TELEPORT(Spellbook.ARCEUUS, "Cemetery Teleport"),
+    BARROWS_TELEPORT(Spellbook.ARCEUUS, "Barrows Teleport"),
+    ARCEUUS_APE_ATOLL_TELEPORT(Spellbook.ARCEUUS, "Ape Atoll Teleport");
+
+    private static final TeleportSpell[] VALUES = values();
+
+    private static final Map<Spellbook, Map<String, TeleportSpell>> BY_NAME = new EnumMap<>(Spellbook.class);
+
+    static {
+        int[] nextIndex = new int[Spellbook.values().length];
+
+        for (TeleportSpell spell : VALUES) {
+            int index = nextIndex[spell.spellbook.ordinal()]++;
+
+            if (index >= Long.SIZE) {
+                throw new IllegalStateException("Too many teleports in spellbook " + spell.spellbook);
+            }
+
+            spell.bit = 1L << index;
+            BY_NAME.computeIfAbsent(spell.spellbook, k -> new HashMap<>()).put(spell.spellName, spell);
+        }
+    }
+
+    private final Spellbook spellbook;
+    private final String displayName;
+    private final String spellName;
+    private final Set<String> aliases;
+    private long bit;
+
+    TeleportSpell(Spellbook spellbook, String displayName, String... aliases) {
+        this.spellbook = spellbook;
+        this.displayName = displayName;
+        this.spellName = MenuTargetNormalizer.normalize(displayName);
+        this.aliases = Set.of(aliases);
+    }
+
+    Spellbook getSpellbook() {
+        return spellbook;
+    }
+
+    String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Normalized name as produced by {@link MenuTargetNormalizer}.
+     */
+    String getName() {
+        return spellName;
+    }
+
+    /**
+     * Bit of this teleport in its spellbook's blocked mask.
+     */
+    long getBit() {
+        return bit;
+    }
+
+    static TeleportSpell fromName(Spellbook spellbook, String normalizedName) {
+        Map<String, TeleportSpell> spells = BY_NAME.get(spellbook);
+        return spells == null ? null : spells.get(normalizedName);
+    }
+
+    /**
+     * Resolves a teleport by its name, or by any name containing one of its aliases.
+     * This scans all teleports of the spellbook, so it is only used while building the {@link SpellIndex}
+     * and loading the config, not by the menu handlers.
+     */
+    static TeleportSpell fromNameOrAlias(Spellbook spellbook, String normalizedName) {
+        TeleportSpell spell = fromName(spellbook, normalizedName);
+
+        if (spell != null) {
+            return spell;
+        }
+
+        for (TeleportSpell candidate : VALUES) {
+            if (candidate.spellbook == spellbook && candidate.aliases.stream().anyMatch(normalizedName::contains)) {
+                return candidate;
+            }
+        }
+
+        return null;
+    }
+}
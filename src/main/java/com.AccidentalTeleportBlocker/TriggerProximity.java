@@ -0,0 +1,76 @@
+package com.AccidentalTeleportBlocker;
+
+/**
+ * Remembers the spellbook slot of the trigger spell that opened the last block window, so teleports can be
+ * blocked only near it.
+ * <p>
+ * A trigger spell clicked in the spellbook is remembered with its trigger id. When the cast of that trigger
+ * is confirmed, its slot becomes the slot teleports are measured against. Spells cast some other way, like
+ * alchemy on an item, are confirmed on a later click, so the slot of the last spellbook click of the same
+ * trigger is used. Slots are kept as widget ids and their positions read from the {@link SpellIndex}, which
+ * holds the current layout of the spellbook.
+ * <p>
+ * Not thread-safe, only use it from the client thread.
+ */
+final class TriggerProximity {
+
+    private static final int NONE = -1;
+
+    private int clickedWidget = NONE;
+    private Spellbook clickedSpellbook;
+    private int clickedTrigger = SpellPatternMatcher.NO_MATCH;
+
+    private int triggerWidget = NONE;
+    private Spellbook triggerSpellbook;
+    private int triggerTick;
+    private boolean triggered;
+
+    /**
+     * Remembers a trigger spell clicked in the spellbook.
+     */
+    void clicked(SpellIndex.Spell spell, int trigger) {
+        clickedWidget = spell.getWidgetId();
+        clickedSpellbook = spell.getSpellbook();
+        clickedTrigger = trigger;
+    }
+
+    /**
+     * The cast of a trigger spell was confirmed and opened its window.
+     */
+    void opened(int trigger, int tick) {
+        triggerWidget = trigger == clickedTrigger ? clickedWidget : NONE;
+        triggerSpellbook = clickedSpellbook;
+        triggerTick = tick;
+        triggered = true;
+    }
+
+    /**
+     * Pixels between the slot of the teleport and the slot of the last trigger spell, or
+     * {@link BlockInput#UNKNOWN_DISTANCE} if either slot is not known.
+     */
+    int distanceTo(SpellIndex index, SpellIndex.Spell teleportSpell) {
+        SpellIndex.Spell trigger = triggerWidget != NONE ? index.get(triggerWidget) : null;
+
+        // The widget holds another spell after switching spellbooks
+        if (trigger == null || teleportSpell == null || trigger.getSpellbook() != triggerSpellbook
+                || !trigger.hasPosition() || !teleportSpell.hasPosition()) {
+            return BlockInput.UNKNOWN_DISTANCE;
+        }
+
+        return teleportSpell.distanceTo(trigger);
+    }
+
+    /**
+     * Ticks since the last trigger spell opened its window, {@link Integer#MAX_VALUE} if none did.
+     */
+    int ticksSince(int tick) {
+        return triggered ? tick - triggerTick : Integer.MAX_VALUE;
+    }
+
+    void reset() {
+        clickedWidget = NONE;
+        clickedTrigger = SpellPatternMatcher.NO_MATCH;
+        triggerWidget = NONE;
+        triggered = false;
+    }
+}
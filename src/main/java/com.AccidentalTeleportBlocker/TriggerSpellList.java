@@ -0,0 +1,187 @@
+package com.AccidentalTeleportBlocker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable, compiled trigger spell list.
+ * <p>
+ * Entries are comma-separated spell names with an optional window after a colon, in ticks
+ * ({@code high level alchemy:3t}) or seconds ({@code vengeance:10s} or {@code vengeance:10}).
+ * Spells without a window use the unblock delay from the config, and so do spells whose window can't be
+ * read or is longer than {@link TriggerWindowTimer#MAX_WINDOW_TICKS}. Those are listed by
+ * {@link #getInvalidWindows()}. The index of a spell in this list is its trigger id, as returned by
+ * {@link SpellPatternMatcher#match(String)}.
+ */
+final class TriggerSpellList {
+
+    static final int DEFAULT_WINDOW = -1;
+
+    private static final int GAME_TICK_MILLIS = 600;
+    private static final int INVALID_WINDOW = -2;
+
+    /**
+     * Longest window in whole seconds that still fits the timer wheel
+     */
+    static final int MAX_WINDOW_SECONDS = TriggerWindowTimer.MAX_WINDOW_TICKS * GAME_TICK_MILLIS / 1000;
+
+    private static final TriggerSpellList EMPTY = new TriggerSpellList(new LinkedHashMap<>());
+
+    private final List<String> spells;
+    private final List<String> windowSpecs;
+    private final int[] windowTicks;
+    private final List<String> invalidWindows;
+    private final SpellPatternMatcher matcher;
+
+    private TriggerSpellList(LinkedHashMap<String, String> entries) {
+        this.spells = List.copyOf(entries.keySet());
+        this.windowSpecs = Collections.unmodifiableList(new ArrayList<>(entries.values()));
+        this.windowTicks = new int[spells.size()];
+        List<String> invalid = new ArrayList<>();
+
+        for (int i = 0; i < windowTicks.length; i++) {
+            windowTicks[i] = parseWindowTicks(windowSpecs.get(i));
+
+            if (windowTicks[i] == INVALID_WINDOW) {
+                windowTicks[i] = DEFAULT_WINDOW;
+                invalid.add(spells.get(i) + ":" + windowSpecs.get(i));
+            }
+        }
+
+        this.invalidWindows = List.copyOf(invalid);
+
+        this.matcher = new SpellPatternMatcher(spells);
+    }
+
+    static TriggerSpellList empty() {
+        return EMPTY;
+    }
+
+    static TriggerSpellList parse(String spellList) {
+        LinkedHashMap<String, String> entries = new LinkedHashMap<>();
+
+        if (spellList != null && !spellList.trim().isEmpty()) {
+            for (String entry : spellList.split(",")) {
+                String spell = entry;
+                String window = null;
+                int separator = entry.indexOf(':');
+
+                if (separator != -1) {
+                    spell = entry.substring(0, separator);
+                    window = entry.substring(separator + 1).trim().toLowerCase();
+                }
+
+                spell = spell.trim().toLowerCase();
+
+                if (!spell.isEmpty()) {
+                    entries.put(spell, window == null || window.isEmpty() ? null : window);
+                }
+            }
+        }
+
+        return new TriggerSpellList(entries);
+    }
+
+    SpellPatternMatcher getMatcher() {
+        return matcher;
+    }
+
+    int size() {
+        return spells.size();
+    }
+
+    boolean contains(String spellName) {
+        return spells.contains(spellName);
+    }
+
+    /**
+     * Window of the given trigger in ticks, or {@link #DEFAULT_WINDOW} to use the configured delay.
+     */
+    int getWindowTicks(int triggerId) {
+        return windowTicks[triggerId];
+    }
+
+    /**
+     * Entries whose window can't be read or is too long, as {@code spell:window}. They use the configured delay.
+     */
+    List<String> getInvalidWindows() {
+        return invalidWindows;
+    }
+
+    TriggerSpellList with(String spellName) {
+        if (contains(spellName)) {
+            return this;
+        }
+
+        LinkedHashMap<String, String> entries = toEntries();
+        entries.put(spellName, null);
+        return new TriggerSpellList(entries);
+    }
+
+    TriggerSpellList without(String spellName) {
+        if (!contains(spellName)) {
+            return this;
+        }
+
+        LinkedHashMap<String, String> entries = toEntries();
+        entries.remove(spellName);
+        return new TriggerSpellList(entries);
+    }
+
+    /**
+     * Formats the list for the config, sorted alphabetically and keeping each spell's window.
+     */
+    String format() {
+        return toEntries().entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(e -> e.getValue() == null ? e.getKey() : e.getKey() + ":" + e.getValue())
+                .collect(Collectors.joining(", "));
+    }
+
+    private LinkedHashMap<String, String> toEntries() {
+        LinkedHashMap<String, String> entries = new LinkedHashMap<>();
+
+        for (int i = 0; i < spells.size(); i++) {
+            entries.put(spells.get(i), windowSpecs.get(i));
+        }
+
+        return entries;
+    }
+
+    private static int parseWindowTicks(String window) {
+        if (window == null) {
+            return DEFAULT_WINDOW;
+        }
+
+        boolean ticks = window.endsWith("t");
+        String number = ticks || window.endsWith("s") ? window.substring(0, window.length() - 1).trim() : window;
+
+        try {
+            int value = Integer.parseInt(number);
+
+            // Longer windows would wrap around the timer wheel
+            if (value < 0 || value > (ticks ? TriggerWindowTimer.MAX_WINDOW_TICKS : MAX_WINDOW_SECONDS)) {
+                return INVALID_WINDOW;
+            }
+
+            return ticks ? value : secondsToTicks(value);
+        } catch (NumberFormatException e) {
+            return INVALID_WINDOW;
+        }
+    }
+
+    /**
+     * Rounds up so the window is never shorter than the given seconds.
+     */
+    static int secondsToTicks(int seconds) {
+        return (seconds * 1000 + GAME_TICK_MILLIS - 1) / GAME_TICK_MILLIS;
+    }
+
+    static int ticksToSeconds(int ticks) {
+        return (ticks * GAME_TICK_MILLIS + 999) / 1000;
+    }
+}
@@ -0,0 +1,143 @@
+package com.AccidentalTeleportBlocker;
+
+import java.util.Arrays;
+
+/**
+ * Tick-driven hashed timer wheel tracking the block windows opened by trigger spells.
+ * <p>
+ * Every trigger spell has at most one window, casting it again moves its expiry. Windows of different
+ * trigger spells can overlap, the block stays active while any of them is open. Each wheel slot
+ * counts the windows expiring on that tick, so advancing a tick and checking for an open window are
+ * O(1) no matter how many windows are live. The remaining time until the last window closes is kept
+ * up to date on every tick, so it can be read without any arithmetic.
+ * <p>
+ * Not thread-safe, only use it from the client thread.
+ */
+final class TriggerWindowTimer {
+
+    private static final int WHEEL_SIZE = 1024;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int CLOSED = Integer.MIN_VALUE;
+
+    /**
+     * Longest window the wheel can hold without wrapping around
+     */
+    static final int MAX_WINDOW_TICKS = WHEEL_SIZE - 1;
+
+    private final int[] expiringPerSlot = new int[WHEEL_SIZE];
+
+    // Expiry tick per trigger id, a window is open up to and including its expiry tick
+    private int[] expiryPerTrigger = new int[0];
+
+    private int currentTick;
+    private int openWindows;
+    private int lastExpiry = CLOSED;
+    private int remainingTicks = -1;
+    private int remainingSeconds = 0;
+
+    /**
+     * Closes all windows and resizes the wheel for a new trigger list.
+     */
+    void reset(int triggerCount) {
+        Arrays.fill(expiringPerSlot, 0);
+        expiryPerTrigger = new int[triggerCount];
+        Arrays.fill(expiryPerTrigger, CLOSED);
+        openWindows = 0;
+        lastExpiry = CLOSED;
+        updateRemaining();
+    }
+
+    /**
+     * Opens (or re-opens) the window of a trigger spell, starting at the current tick.
+     */
+    void open(int triggerId, int windowTicks) {
+        if (triggerId < 0 || triggerId >= expiryPerTrigger.length) {
+            return;
+        }
+
+        int expiry = currentTick + Math.max(0, Math.min(windowTicks, MAX_WINDOW_TICKS));
+        int previous = expiryPerTrigger[triggerId];
+
+        if (previous != CLOSED && previous >= currentTick) {
+            expiringPerSlot[previous & WHEEL_MASK]--;
+            openWindows--;
+        }
+
+        expiryPerTrigger[triggerId] = expiry;
+        expiringPerSlot[expiry & WHEEL_MASK]++;
+        openWindows++;
+
+        if (lastExpiry == CLOSED || expiry > lastExpiry) {
+            lastExpiry = expiry;
+        } else if (previous == lastExpiry && expiry < previous) {
+            lastExpiry = latestExpiry();
+        }
+
+        updateRemaining();
+    }
+
+    /**
+     * Expiry of the window that closes last. Only needed when the last window is shortened, so the windows
+     * are scanned instead of kept sorted.
+     */
+    private int latestExpiry() {
+        int latest = CLOSED;
+
+        for (int expiry : expiryPerTrigger) {
+            if (expiry != CLOSED && expiry >= currentTick && expiry > latest) {
+                latest = expiry;
+            }
+        }
+
+        return latest;
+    }
+
+    /**
+     * Advances the wheel by one game tick, closing the windows that expired on the previous tick.
+     */
+    void tick() {
+        int expiredSlot = currentTick & WHEEL_MASK;
+
+        openWindows -= expiringPerSlot[expiredSlot];
+        expiringPerSlot[expiredSlot] = 0;
+        currentTick++;
+
+        if (openWindows == 0) {
+            lastExpiry = CLOSED;
+        }
+
+        updateRemaining();
+    }
+
+    boolean isOpen() {
+        return openWindows > 0;
+    }
+
+    int getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Ticks until the last open window closes, or -1 when no window is open.
+     */
+    int getRemainingTicks() {
+        return remainingTicks;
+    }
+
+    /**
+     * {@link #getRemainingTicks()} rounded up to whole seconds, at least 1 while a window is open.
+     */
+    int getRemainingSeconds() {
+        return remainingSeconds;
+    }
+
+    private void updateRemaining() {
+        if (openWindows > 0) {
+            remainingTicks = lastExpiry - currentTick;
+            remainingSeconds = Math.max(1, TriggerSpellList.ticksToSeconds(remainingTicks));
+        } else {
+            remainingTicks = -1;
+            remainingSeconds = 0;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.AccidentalTeleportBlocker;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BlockPolicyEngineTest {
+
+    private static final TeleportSpell BLOCKED = TeleportSpell.VARROCK_TELEPORT;
+    private static final TeleportSpell NOT_BLOCKED = TeleportSpell.CAMELOT_TELEPORT;
+    private static final int OBJECT_KEY = 1234;
+
+    private static final int NEAR = 10;
+    private static final int FAR = 100;
+
+    private final BlockInput input = new BlockInput();
+
+    @Test
+    public void allowsOtherEntries() {
+        RuleSnapshot rules = rules(false, false, false, 0);
+
+        assertEquals(BlockDecision.ALLOW_NOT_TELEPORT, decide(rules, null, false, false, false, true, NEAR, 0));
+        assertEquals(BlockDecision.ALLOW_NOT_BLOCKED, decide(rules, NOT_BLOCKED, false, false, false, true, NEAR, 0));
+        assertEquals(BlockDecision.ALLOW_NOT_TELEPORT, BlockPolicyEngine.decide(rules,
+                input.set(null, OptionCategory.OBJECT, OBJECT_KEY + 1, false, false, false, true, NEAR, 0)));
+    }
+
+    @Test
+    public void blocksBlockedTeleports() {
+        assertEquals(BlockDecision.BLOCK, decide(rules(false, false, false, 0), BLOCKED, false, false, false, true, NEAR, 0));
+    }
+
+    @Test
+    public void blocksBlockedOptions() {
+        assertEquals(BlockDecision.BLOCK, BlockPolicyEngine.decide(rules(false, false, false, 0),
+                input.set(null, OptionCategory.OBJECT, OBJECT_KEY, false, false, false, true, BlockInput.UNKNOWN_DISTANCE, 0)));
+    }
+
+    @Test
+    public void allowsRightClickWhenConfigured() {
+        assertEquals(BlockDecision.ALLOW_RIGHT_CLICK, decide(rules(false, false, true, 0), BLOCKED, false, false, true, true, NEAR, 0));
+        assertEquals(BlockDecision.BLOCK, decide(rules(false, false, false, 0), BLOCKED, false, false, true, true, NEAR, 0));
+    }
+
+    @Test
+    public void allowsWithoutTriggerWindow() {
+        assertEquals(BlockDecision.ALLOW_NO_TRIGGER, decide(rules(true, false, false, 0), BLOCKED, false, false, false, false, NEAR, 0));
+        assertEquals(BlockDecision.BLOCK, decide(rules(true, false, false, 0), BLOCKED, false, false, false, true, NEAR, 0));
+        assertEquals("The window only counts with trigger spells enabled",
+                BlockDecision.BLOCK, decide(rules(false, false, false, 0), BLOCKED, false, false, false, false, NEAR, 0));
+    }
+
+    @Test
+    public void allowsFarFromTrigger() {
+        RuleSnapshot rules = rules(true, false, false, 50);
+
+        assertEquals(BlockDecision.ALLOW_FAR_FROM_TRIGGER, decide(rules, BLOCKED, false, false, false, true, FAR, 5));
+        assertEquals(BlockDecision.BLOCK, decide(rules, BLOCKED, false, false, false, true, NEAR, 5));
+        assertEquals("Cast just now", BlockDecision.BLOCK, decide(rules, BLOCKED, false, false, false, true, FAR, 1));
+        assertEquals("Unknown slots", BlockDecision.BLOCK, decide(rules, BLOCKED, false, false, false, true, BlockInput.UNKNOWN_DISTANCE, 5));
+        assertEquals("Guard off", BlockDecision.BLOCK, decide(rules(true, false, false, 0), BLOCKED, false, false, false, true, FAR, 5));
+    }
+
+    @Test
+    public void requiresModifierKey() {
+        RuleSnapshot rules = rules(false, true, false, 0);
+
+        assertEquals(BlockDecision.BLOCK_MODIFIER_REQUIRED, decide(rules, BLOCKED, false, false, false, true, NEAR, 0));
+        assertEquals(BlockDecision.BLOCK_MODIFIER_REQUIRED, decide(rules, BLOCKED, true, false, false, true, NEAR, 0));
+        assertEquals(BlockDecision.ALLOW_MODIFIER, decide(rules, BLOCKED, false, true, false, true, NEAR, 0));
+    }
+
+    @Test
+    public void decidingDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+
+        RuleSnapshot rules = rules(true, true, false, 50);
+        long threadId = Thread.currentThread().getId();
+        int blocked = 0;
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+
+        for (int i = 0; i < 100_000; i++) {
+            blocked += decide(rules, (i & 1) == 0 ? BLOCKED : NOT_BLOCKED, false, (i & 2) == 0, false, true, i % 200, i % 10).isBlocked() ? 1 : 0;
+        }
+
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        // Nothing per decision, only room for what the measurement itself allocates
+        assertTrue(allocated + " bytes allocated", allocated < 1024);
+        assertTrue(blocked > 0);
+    }
+
+    private BlockDecision decide(RuleSnapshot rules, TeleportSpell teleport, boolean shiftHeld, boolean ctrlHeld,
+                                 boolean menuOpen, boolean triggerWindowOpen, int triggerDistance, int ticksSinceTrigger) {
+        return BlockPolicyEngine.decide(rules, input.set(teleport, null, OptionCategory.NO_KEY, shiftHeld, ctrlHeld, menuOpen,
+                triggerWindowOpen, triggerDistance, ticksSinceTrigger));
+    }
+
+    private static RuleSnapshot rules(boolean triggerSpellsEnabled, boolean modifierKeyEnabled, boolean rightClickAllowed,
+                                      int proximityPixels) {
+        return new RuleSnapshot(new long[Spellbook.values().length], RuleSnapshot.emptyBlockedOptions(), TriggerSpellList.empty(),
+                triggerSpellsEnabled, 5, modifierKeyEnabled, AccidentalTeleportBlockerPluginConfig.ModifierKey.CTRL, rightClickAllowed,
+                proximityPixels, 2)
+                .withTeleportBlocked(BLOCKED, true)
+                .withOptionBlocked(OptionCategory.OBJECT, OBJECT_KEY, true);
+    }
+}
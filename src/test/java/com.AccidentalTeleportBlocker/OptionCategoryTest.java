@@ -0,0 +1,54 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.api.MenuAction;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OptionCategoryTest {
+
+    private static final int GLORY_4 = 1712; // Amulet of glory(4)
+    private static final int GLORY_3 = 1710;
+    private static final int GLORY_6 = 11978;
+    private static final int DUELING_8 = 2552; // Ring of dueling(8)
+    private static final int DUELING_7 = 2554;
+    private static final int DUELING_1 = 2566;
+
+    private static final int RUB = 3;
+
+    @Test
+    public void blockOnOneChargeBlocksAllCharges() {
+        RuleSnapshot rules = RuleSnapshot.EMPTY
+                .withOptionBlocked(OptionCategory.ITEM, OptionCategory.keyOf(MenuAction.CC_OP, RUB, GLORY_4), true)
+                .withOptionBlocked(OptionCategory.WORN, OptionCategory.keyOf(MenuAction.CC_OP, RUB, DUELING_8), true);
+
+        assertTrue(rules.isOptionBlocked(OptionCategory.ITEM, OptionCategory.keyOf(MenuAction.CC_OP, RUB, GLORY_3)));
+        assertTrue(rules.isOptionBlocked(OptionCategory.ITEM, OptionCategory.keyOf(MenuAction.CC_OP_LOW_PRIORITY, RUB, GLORY_6)));
+        assertTrue(rules.isOptionBlocked(OptionCategory.ITEM, OptionCategory.keyOf(MenuAction.ITEM_THIRD_OPTION, 0, GLORY_3)));
+        assertFalse("Other options stay allowed",
+                rules.isOptionBlocked(OptionCategory.ITEM, OptionCategory.keyOf(MenuAction.CC_OP, RUB + 1, GLORY_3)));
+
+        assertTrue(rules.isOptionBlocked(OptionCategory.WORN, OptionCategory.keyOf(MenuAction.CC_OP, RUB, DUELING_7)));
+        assertTrue(rules.isOptionBlocked(OptionCategory.WORN, OptionCategory.keyOf(MenuAction.CC_OP, RUB, DUELING_1)));
+        assertFalse(rules.isOptionBlocked(OptionCategory.WORN, OptionCategory.keyOf(MenuAction.CC_OP, RUB, GLORY_3)));
+    }
+
+    @Test
+    public void objectsAreNotMapped() {
+        // Object ids are not item ids, an object with the id of a charged item keeps its own id
+        assertEquals(OptionCategory.key(GLORY_4, 1), OptionCategory.keyOf(MenuAction.GAME_OBJECT_FIRST_OPTION, GLORY_4, -1));
+        assertNotEquals(OptionCategory.keyOf(MenuAction.GAME_OBJECT_FIRST_OPTION, GLORY_3, -1),
+                OptionCategory.keyOf(MenuAction.GAME_OBJECT_FIRST_OPTION, GLORY_4, -1));
+        assertEquals(OptionCategory.key(GLORY_4, 1), OptionCategory.OBJECT.baseKey(OptionCategory.key(GLORY_4, 1)));
+    }
+
+    @Test
+    public void loadedBlocksOfAChargeBlockAllCharges() {
+        // Stored by the id of the blocked charge, before items were keyed by their base item
+        assertEquals(OptionCategory.itemKey(GLORY_3, RUB), OptionCategory.ITEM.baseKey(OptionCategory.key(GLORY_4, RUB)));
+        assertEquals(OptionCategory.itemKey(DUELING_1, RUB), OptionCategory.WORN.baseKey(OptionCategory.key(DUELING_7, RUB)));
+    }
+}
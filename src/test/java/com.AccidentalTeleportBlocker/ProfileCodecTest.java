@@ -0,0 +1,158 @@
+package com.AccidentalTeleportBlocker;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProfileCodecTest {
+
+    @Test
+    public void roundTrip() {
+        RuleSnapshot rules = new RuleSnapshot(new long[Spellbook.values().length], RuleSnapshot.emptyBlockedOptions(),
+                TriggerSpellList.parse("high level alchemy:3, vengeance"), true, 7, false,
+                AccidentalTeleportBlockerPluginConfig.ModifierKey.SHIFT, true, 48, 2)
+                .withTeleportBlocked(TeleportSpell.VARROCK_TELEPORT, true)
+                .withTeleportBlocked(TeleportSpell.MOONCLAN_TELEPORT, true)
+                .withOptionBlocked(OptionCategory.ITEM, OptionCategory.itemKey(1712, 3), true)
+                .withOptionBlocked(OptionCategory.ITEM, OptionCategory.itemKey(2552, 4), true)
+                .withOptionBlocked(OptionCategory.WORN, OptionCategory.itemKey(1712, 2), true)
+                .withOptionBlocked(OptionCategory.OBJECT, OptionCategory.key(29241, 1), true);
+
+        RuleSnapshot decoded = ProfileCodec.decode(ProfileCodec.encode(rules));
+
+        for (Spellbook spellbook : Spellbook.values()) {
+            assertEquals(rules.getBlockedTeleportMask(spellbook), decoded.getBlockedTeleportMask(spellbook));
+        }
+
+        for (OptionCategory category : OptionCategory.values()) {
+            assertArrayEquals(sorted(rules.getBlockedOptions(category)), sorted(decoded.getBlockedOptions(category)));
+        }
+
+        assertEquals(rules.getTriggerSpells().format(), decoded.getTriggerSpells().format());
+        assertTrue(decoded.isTriggerSpellsEnabled());
+        assertEquals(7, decoded.getDefaultWindowTicks());
+        assertFalse(decoded.isModifierKeyEnabled());
+        assertEquals(AccidentalTeleportBlockerPluginConfig.ModifierKey.SHIFT, decoded.getModifierKey());
+        assertTrue(decoded.isRightClickAllowed());
+        assertEquals(48, decoded.getProximityPixels());
+        assertEquals(2, decoded.getProximityTicks());
+    }
+
+    @Test
+    public void decodesVersion1() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(1);
+        out.writeByte(Spellbook.values().length);
+
+        for (Spellbook spellbook : Spellbook.values()) {
+            out.writeLong(spellbook == Spellbook.STANDARD ? TeleportSpell.CAMELOT_TELEPORT.getBit() : 0L);
+        }
+
+        // Item options, then object options
+        out.writeByte(2);
+        out.writeByte(1);
+        out.writeByte(OptionCategory.key(1712, 3) & 0x7F | 0x80);
+        out.writeByte(OptionCategory.key(1712, 3) >>> 7 & 0x7F | 0x80);
+        out.writeByte(OptionCategory.key(1712, 3) >>> 14);
+        out.writeByte(0);
+
+        out.writeByte(1 | 4); // Modifier key and trigger spells enabled
+        out.writeByte(AccidentalTeleportBlockerPluginConfig.ModifierKey.CTRL.ordinal());
+        out.writeByte(5);
+        out.writeUTF("vengeance");
+
+        RuleSnapshot decoded = ProfileCodec.read(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(TeleportSpell.CAMELOT_TELEPORT.getBit(), decoded.getBlockedTeleportMask(Spellbook.STANDARD));
+        assertTrue("Blocked for all charges", decoded.isOptionBlocked(OptionCategory.ITEM, OptionCategory.itemKey(1710, 3)));
+        assertTrue("Item options were blocked when worn too", decoded.isOptionBlocked(OptionCategory.WORN, OptionCategory.itemKey(1712, 3)));
+        assertEquals(0, decoded.getBlockedOptions(OptionCategory.OBJECT).size());
+        assertTrue(decoded.isModifierKeyEnabled());
+        assertTrue(decoded.isTriggerSpellsEnabled());
+        assertFalse(decoded.isRightClickAllowed());
+        assertEquals(5, decoded.getDefaultWindowTicks());
+        assertEquals("vengeance", decoded.getTriggerSpells().format());
+        assertEquals("Version 1 blocks anywhere in the spellbook", 0, decoded.getProximityPixels());
+        assertEquals(0, decoded.getProximityTicks());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownVersion() {
+        ProfileCodec.read(new ByteArrayInputStream(new byte[]{(byte) (ProfileCodec.VERSION + 1)}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedProfile() {
+        byte[] bytes = ProfileCodec.toBytes(RuleSnapshot.EMPTY);
+        ProfileCodec.read(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsHugeOptionCount() {
+        // 0x7FFFFFFF options, which would not fit in memory
+        ProfileCodec.read(new ByteArrayInputStream(optionCount(0xFF, 0xFF, 0xFF, 0xFF, 0x07)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeOptionCount() {
+        ProfileCodec.read(new ByteArrayInputStream(optionCount(0xFF, 0xFF, 0xFF, 0xFF, 0x0F)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEndlessVarInt() {
+        ProfileCodec.read(new ByteArrayInputStream(optionCount(0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01)));
+    }
+
+    @Test
+    public void rejectsCorruptBytes() {
+        byte[] bytes = ProfileCodec.toBytes(RuleSnapshot.EMPTY
+                .withOptionBlocked(OptionCategory.ITEM, OptionCategory.key(1712, 3), true)
+                .withTriggerSpells(TriggerSpellList.parse("vengeance")));
+
+        // Every corruption of a single byte either decodes or is rejected, never anything else
+        for (int i = 1; i < bytes.length; i++) {
+            for (int value = 0; value < 256; value++) {
+                byte[] corrupt = bytes.clone();
+                corrupt[i] = (byte) value;
+
+                try {
+                    ProfileCodec.read(new ByteArrayInputStream(corrupt));
+                } catch (IllegalArgumentException ignored) {
+                    // Rejected
+                }
+            }
+        }
+    }
+
+    /**
+     * A version 3 profile without blocked teleports, cut off after the count of the first option category.
+     */
+    private static byte[] optionCount(int... varInt) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(ProfileCodec.VERSION);
+        bytes.write(0);
+        bytes.write(OptionCategory.values().length);
+
+        for (int b : varInt) {
+            bytes.write(b);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static int[] sorted(IntHashSet set) {
+        int[] keys = set.toArray();
+        Arrays.sort(keys);
+        return keys;
+    }
+}
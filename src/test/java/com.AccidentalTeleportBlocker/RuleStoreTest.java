@@ -0,0 +1,133 @@
+package com.AccidentalTeleportBlocker;
+
+import net.runelite.client.config.ConfigManager;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RuleStoreTest {
+
+    private static final String GROUP = RuleStore.CONFIG_GROUP;
+
+    private final Map<String, String> values = new HashMap<>();
+    private ConfigManager configManager;
+    private RuleStore ruleStore;
+
+    @Before
+    public void setUp() {
+        configManager = mock(ConfigManager.class);
+        when(configManager.getConfiguration(anyString(), anyString()))
+                .thenAnswer(invocation -> values.get(invocation.getArgument(0) + "." + invocation.getArgument(1)));
+        doAnswer(invocation -> values.put(invocation.getArgument(0) + "." + invocation.getArgument(1), invocation.getArgument(2)))
+                .when(configManager).setConfiguration(anyString(), anyString(), anyString());
+        doAnswer(invocation -> values.remove(invocation.getArgument(0) + "." + invocation.getArgument(1)))
+                .when(configManager).unsetConfiguration(anyString(), anyString());
+
+        ruleStore = new RuleStore(configManager, mock(AccidentalTeleportBlockerPluginConfig.class));
+    }
+
+    @Test
+    public void migratesLegacyTeleportNames() {
+        configManager.setConfiguration(GROUP, "blockedTeleports_standard", "varrock teleport, Camelot Teleport,ardougne teleport");
+        configManager.setConfiguration(GROUP, "blockedTeleports_lunar", "moonclan teleport");
+
+        long[] masks = load();
+
+        assertEquals(TeleportSpell.VARROCK_TELEPORT.getBit() | TeleportSpell.CAMELOT_TELEPORT.getBit()
+                | TeleportSpell.ARDOUGNE_TELEPORT.getBit(), masks[Spellbook.STANDARD.ordinal()]);
+        assertEquals(TeleportSpell.MOONCLAN_TELEPORT.getBit(), masks[Spellbook.LUNAR.ordinal()]);
+        assertEquals(0L, masks[Spellbook.ANCIENT.ordinal()]);
+        assertEquals("VARROCK_TELEPORT,CAMELOT_TELEPORT,ARDOUGNE_TELEPORT",
+                configManager.getConfiguration(GROUP, "blockedTeleportSpells_standard"));
+    }
+
+    @Test
+    public void migratesAliasNames() {
+        configManager.setConfiguration(GROUP, "blockedTeleports_standard", "grand exchange,seers,outside");
+
+        assertEquals(TeleportSpell.VARROCK_TELEPORT.getBit() | TeleportSpell.CAMELOT_TELEPORT.getBit()
+                | TeleportSpell.TELEPORT_TO_HOUSE.getBit(), load()[Spellbook.STANDARD.ordinal()]);
+    }
+
+    @Test
+    public void dropsUnknownNames() {
+        configManager.setConfiguration(GROUP, "blockedTeleports_standard", "not a teleport,,  ,varrock teleport");
+        configManager.setConfiguration(GROUP, "blockedTeleports_ancient", "varrock teleport");
+
+        long[] masks = load();
+
+        assertEquals(TeleportSpell.VARROCK_TELEPORT.getBit(), masks[Spellbook.STANDARD.ordinal()]);
+        assertEquals("Teleports of other spellbooks are unknown", 0L, masks[Spellbook.ANCIENT.ordinal()]);
+        assertEquals("", configManager.getConfiguration(GROUP, "blockedTeleportSpells_ancient"));
+    }
+
+    @Test
+    public void keepsLegacyKeysAndMigratesOnce() {
+        configManager.setConfiguration(GROUP, "blockedTeleports_standard", "varrock teleport");
+        load();
+
+        assertEquals("varrock teleport", configManager.getConfiguration(GROUP, "blockedTeleports_standard"));
+
+        // The new key wins from now on, also when the block list was emptied
+        configManager.setConfiguration(GROUP, "blockedTeleportSpells_standard", "");
+        assertEquals(0L, load()[Spellbook.STANDARD.ordinal()]);
+    }
+
+    @Test
+    public void loadsSpellIds() {
+        configManager.setConfiguration(GROUP, "blockedTeleportSpells_standard", "CAMELOT_TELEPORT, REMOVED_TELEPORT,LUNAR_HOME_TELEPORT");
+
+        assertEquals(TeleportSpell.CAMELOT_TELEPORT.getBit(), load()[Spellbook.STANDARD.ordinal()]);
+    }
+
+    @Test
+    public void copiesItemOptionsToWornItems() {
+        configManager.setConfiguration(GROUP, "blockedItemOptions", "1712:3,2552:4");
+
+        IntHashSet[] options = ruleStore.loadBlockedOptions();
+
+        assertEquals(2, options[OptionCategory.ITEM.ordinal()].size());
+        assertTrue(options[OptionCategory.WORN.ordinal()].contains(OptionCategory.itemKey(1712, 3)));
+        assertTrue(options[OptionCategory.WORN.ordinal()].contains(OptionCategory.itemKey(2552, 4)));
+
+        // Once worn item options are stored, they are no longer copied
+        configManager.setConfiguration(GROUP, "blockedWornOptions", "1712:2");
+        options = ruleStore.loadBlockedOptions();
+
+        assertEquals(1, options[OptionCategory.WORN.ordinal()].size());
+        assertTrue(options[OptionCategory.WORN.ordinal()].contains(OptionCategory.itemKey(1712, 2)));
+        assertFalse(options[OptionCategory.ITEM.ordinal()].contains(OptionCategory.itemKey(1712, 2)));
+    }
+
+    @Test
+    public void writesAllBlockListsOnceReplaced() {
+        configManager.setConfiguration(GROUP, "blockedTeleportSpells_lunar", "MOONCLAN_TELEPORT");
+        configManager.setConfiguration(GROUP, "blockedItemOptions", "1712:3");
+
+        ruleStore.markBlockListsDirty();
+        ruleStore.flush(RuleSnapshot.EMPTY
+                .withTeleportBlocked(TeleportSpell.VARROCK_TELEPORT, true)
+                .withOptionBlocked(OptionCategory.WORN, OptionCategory.key(1712, 2), true));
+
+        assertEquals("VARROCK_TELEPORT", configManager.getConfiguration(GROUP, "blockedTeleportSpells_standard"));
+        assertEquals("", configManager.getConfiguration(GROUP, "blockedTeleportSpells_lunar"));
+        assertEquals("", configManager.getConfiguration(GROUP, "blockedItemOptions"));
+        assertEquals("1712:2", configManager.getConfiguration(GROUP, "blockedWornOptions"));
+    }
+
+    private long[] load() {
+        long[] masks = new long[Spellbook.values().length];
+        ruleStore.loadBlockedTeleports(masks);
+        return masks;
+    }
+}
@@ -0,0 +1,136 @@
+package com.AccidentalTeleportBlocker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpellPatternMatcherTest {
+
+    private static final List<String> SPELLS = List.of(
+            // Standard
+            "Wind Strike", "Confuse", "Water Strike", "Enchant Crossbow Bolt", "Earth Strike", "Weaken", "Fire Strike",
+            "Bones to Bananas", "Wind Bolt", "Curse", "Bind", "Low Level Alchemy", "Water Bolt", "Earth Bolt",
+            "Telekinetic Grab", "Fire Bolt", "Crumble Undead", "Wind Blast", "Superheat Item", "Water Blast",
+            "Iban Blast", "Snare", "Magic Dart", "Earth Blast", "High Level Alchemy", "Charge Water Orb", "Fire Blast",
+            "Charge Earth Orb", "Bones to Peaches", "Saradomin Strike", "Claws of Guthix", "Flames of Zamorak",
+            "Wind Wave", "Charge Fire Orb", "Water Wave", "Charge Air Orb", "Vulnerability", "Earth Wave", "Enfeeble",
+            "Fire Wave", "Entangle", "Stun", "Charge", "Wind Surge", "Water Surge", "Earth Surge", "Fire Surge",
+            // Ancient
+            "Smoke Rush", "Shadow Rush", "Blood Rush", "Ice Rush", "Smoke Burst", "Shadow Burst", "Blood Burst",
+            "Ice Burst", "Smoke Blitz", "Shadow Blitz", "Blood Blitz", "Ice Blitz", "Smoke Barrage", "Shadow Barrage",
+            "Blood Barrage", "Ice Barrage",
+            // Lunar
+            "Bake Pie", "Geomancy", "Cure Plant", "Monster Examine", "NPC Contact", "Cure Other", "Humidify", "Cure Me",
+            "Hunter Kit", "Cure Group", "Stat Spy", "Spin Flax", "Superglass Make", "Tan Leather", "Dream",
+            "String Jewellery", "Stat Restore Pot Share", "Magic Imbue", "Fertile Soil", "Boost Potion Share",
+            "Plank Make", "Recharge Dragonstone", "Energy Transfer", "Heal Other", "Vengeance Other", "Vengeance",
+            "Heal Group", "Spellbook Swap",
+            // Arceuus
+            "Reanimate Goblin", "Lesser Corruption", "Basic Reanimation", "Resurrect Lesser Ghost", "Dark Lure",
+            "Mark of Darkness", "Inferior Demonbane", "Superior Demonbane", "Dark Demonbane", "Ward of Arceuus",
+            "Shadow Veil", "Vile Vigour", "Degrime", "Resurrect Crops", "Death Charge", "Demonic Offering",
+            "Sinister Offering", "Greater Corruption", "Resurrect Greater Ghost");
+
+    @Test
+    public void matchesLikeTwoWayContainsOverAllSpells() {
+        List<String> names = allSpellNames();
+
+        // Every spell as the only trigger, then growing lists of triggers
+        for (String trigger : names) {
+            assertMatchesBaseline(List.of(trigger), names);
+        }
+
+        for (int count = 2; count <= names.size(); count *= 2) {
+            assertMatchesBaseline(names.subList(0, count), names);
+        }
+
+        assertMatchesBaseline(List.of("high level alchemy", "low level alchemy", "vengeance", "ice barrage"), names);
+    }
+
+    @Test
+    public void emptyNamesMatchNothing() {
+        SpellPatternMatcher matcher = new SpellPatternMatcher(List.of("high level alchemy", "vengeance"));
+
+        assertEquals(SpellPatternMatcher.NO_MATCH, matcher.match(""));
+        assertEquals(SpellPatternMatcher.NO_MATCH, SpellPatternMatcher.empty().match(""));
+        assertEquals(SpellPatternMatcher.NO_MATCH, SpellPatternMatcher.empty().match("vengeance"));
+        assertEquals(SpellPatternMatcher.NO_MATCH, new SpellPatternMatcher(List.of()).match("vengeance"));
+    }
+
+    @Test
+    public void triggerInsideAnotherTrigger() {
+        SpellPatternMatcher matcher = new SpellPatternMatcher(List.of("vengeance other", "vengeance"));
+
+        assertEquals(1, matcher.match("vengeance"));
+        assertTrue(matcher.match("vengeance other") != SpellPatternMatcher.NO_MATCH);
+        assertEquals(1, matcher.match("cast vengeance now"));
+    }
+
+    @Test
+    public void nameInsideTrigger() {
+        SpellPatternMatcher matcher = new SpellPatternMatcher(List.of("wind strike", "high level alchemy"));
+
+        assertEquals(1, matcher.match("alchemy"));
+        assertEquals(1, matcher.match("level al"));
+        assertEquals(0, matcher.match("d s"));
+        assertEquals(SpellPatternMatcher.NO_MATCH, matcher.match("low level alchemy"));
+        assertEquals(SpellPatternMatcher.NO_MATCH, matcher.match("alchemy high"));
+    }
+
+    @Test
+    public void nameDoesNotSpanTwoTriggers() {
+        SpellPatternMatcher matcher = new SpellPatternMatcher(List.of("ice barrage", "blood blitz"));
+
+        assertEquals(SpellPatternMatcher.NO_MATCH, matcher.match("barrageblood"));
+        assertEquals(SpellPatternMatcher.NO_MATCH, matcher.match("barrage blood"));
+    }
+
+    /**
+     * The plugin matched trigger spells with {@code name.contains(trigger) || trigger.contains(name)} before the
+     * matcher replaced it. The matcher has to return one of the triggers that check accepts.
+     */
+    private static void assertMatchesBaseline(List<String> triggers, List<String> names) {
+        SpellPatternMatcher matcher = new SpellPatternMatcher(triggers);
+        List<String> inputs = new ArrayList<>(names);
+
+        for (String name : names) {
+            inputs.add(name.substring(0, name.length() / 2).trim());
+            inputs.add(name.substring(name.length() / 2).trim());
+            inputs.add("cast " + name);
+        }
+
+        for (String input : inputs) {
+            if (input.isEmpty()) {
+                continue;
+            }
+
+            int trigger = matcher.match(input);
+            boolean expected = triggers.stream().anyMatch(t -> input.contains(t) || t.contains(input));
+
+            assertEquals(input + " against " + triggers, expected, trigger != SpellPatternMatcher.NO_MATCH);
+
+            if (trigger != SpellPatternMatcher.NO_MATCH) {
+                String matched = triggers.get(trigger);
+                assertTrue(input + " matched " + matched, input.contains(matched) || matched.contains(input));
+            }
+        }
+    }
+
+    private static List<String> allSpellNames() {
+        List<String> names = new ArrayList<>();
+
+        for (String spell : SPELLS) {
+            names.add(MenuTargetNormalizer.normalize(spell));
+        }
+
+        for (TeleportSpell teleport : TeleportSpell.values()) {
+            names.add(MenuTargetNormalizer.normalize(teleport.getDisplayName()));
+        }
+
+        return names;
+    }
+}
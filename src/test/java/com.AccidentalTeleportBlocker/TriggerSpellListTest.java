@@ -0,0 +1,57 @@
+package com.AccidentalTeleportBlocker;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TriggerSpellListTest {
+
+    @Test
+    public void parsesWindowsInTicksAndSeconds() {
+        TriggerSpellList spells = TriggerSpellList.parse("High Level Alchemy:3t, vengeance:10s, ice barrage : 6 ,bind");
+
+        assertEquals(4, spells.size());
+        assertEquals(3, spells.getWindowTicks(0));
+        assertEquals(17, spells.getWindowTicks(1));
+        assertEquals(10, spells.getWindowTicks(2));
+        assertEquals(TriggerSpellList.DEFAULT_WINDOW, spells.getWindowTicks(3));
+        assertTrue(spells.getInvalidWindows().isEmpty());
+    }
+
+    @Test
+    public void longestWindowsFitTheWheel() {
+        TriggerSpellList spells = TriggerSpellList.parse("a:" + TriggerWindowTimer.MAX_WINDOW_TICKS + "t, b:"
+                + TriggerSpellList.MAX_WINDOW_SECONDS + "s");
+
+        assertEquals(TriggerWindowTimer.MAX_WINDOW_TICKS, spells.getWindowTicks(0));
+        assertTrue(spells.getWindowTicks(1) <= TriggerWindowTimer.MAX_WINDOW_TICKS);
+        assertTrue(spells.getInvalidWindows().isEmpty());
+    }
+
+    @Test
+    public void rejectsWindowsThatDontFitTheWheel() {
+        TriggerSpellList spells = TriggerSpellList.parse("vengeance:1000s, high level alchemy:1024t, bind:3t");
+
+        assertEquals(TriggerSpellList.DEFAULT_WINDOW, spells.getWindowTicks(0));
+        assertEquals(TriggerSpellList.DEFAULT_WINDOW, spells.getWindowTicks(1));
+        assertEquals(3, spells.getWindowTicks(2));
+        assertEquals(List.of("vengeance:1000s", "high level alchemy:1024t"), spells.getInvalidWindows());
+    }
+
+    @Test
+    public void rejectsUnreadableWindows() {
+        TriggerSpellList spells = TriggerSpellList.parse("vengeance:soon, bind:-3t");
+
+        assertEquals(TriggerSpellList.DEFAULT_WINDOW, spells.getWindowTicks(0));
+        assertEquals(TriggerSpellList.DEFAULT_WINDOW, spells.getWindowTicks(1));
+        assertEquals(List.of("vengeance:soon", "bind:-3t"), spells.getInvalidWindows());
+    }
+
+    @Test
+    public void formatKeepsWindowsSorted() {
+        assertEquals("bind, vengeance:10s", TriggerSpellList.parse("Vengeance:10S, bind").format());
+    }
+}
@@ -0,0 +1,153 @@
+package com.AccidentalTeleportBlocker;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TriggerWindowTimerTest {
+
+    private final TriggerWindowTimer timer = new TriggerWindowTimer();
+
+    @Before
+    public void setUp() {
+        timer.reset(3);
+    }
+
+    @Test
+    public void windowIsOpenUpToAndIncludingItsExpiryTick() {
+        timer.open(0, 3);
+        assertTrue(timer.isOpen());
+        assertEquals(3, timer.getRemainingTicks());
+        assertEquals(2, timer.getRemainingSeconds());
+
+        tick(3);
+        assertTrue(timer.isOpen());
+        assertEquals(0, timer.getRemainingTicks());
+        assertEquals("At least one second while open", 1, timer.getRemainingSeconds());
+
+        tick(1);
+        assertFalse(timer.isOpen());
+        assertEquals(-1, timer.getRemainingTicks());
+        assertEquals(0, timer.getRemainingSeconds());
+    }
+
+    @Test
+    public void reopeningMovesTheExpiry() {
+        timer.open(0, 5);
+        tick(4);
+        timer.open(0, 5);
+
+        tick(5);
+        assertTrue(timer.isOpen());
+        tick(1);
+        assertFalse(timer.isOpen());
+    }
+
+    @Test
+    public void reopeningWithAShorterWindowShortensIt() {
+        timer.open(0, 10);
+        timer.open(0, 2);
+        assertEquals(2, timer.getRemainingTicks());
+        assertEquals(2, timer.getRemainingSeconds());
+
+        tick(3);
+        assertFalse(timer.isOpen());
+    }
+
+    @Test
+    public void shorteningTheLastWindowFallsBackToTheNextOne() {
+        timer.open(0, 10);
+        timer.open(1, 6);
+        timer.open(2, 3);
+        timer.open(0, 1);
+        assertEquals(6, timer.getRemainingTicks());
+
+        tick(2);
+        timer.open(1, 0);
+        assertEquals("Windows that closed don't count", 1, timer.getRemainingTicks());
+
+        tick(2);
+        assertFalse(timer.isOpen());
+    }
+
+    @Test
+    public void overlappingWindowsStayOpenUntilTheLastCloses() {
+        timer.open(0, 2);
+        timer.open(1, 6);
+        timer.open(2, 4);
+        assertEquals(6, timer.getRemainingTicks());
+
+        tick(3);
+        assertTrue(timer.isOpen());
+        assertEquals(3, timer.getRemainingTicks());
+
+        tick(4);
+        assertFalse(timer.isOpen());
+    }
+
+    @Test
+    public void windowsAreClampedToTheWheel() {
+        timer.open(0, TriggerWindowTimer.MAX_WINDOW_TICKS + 500);
+        assertEquals(TriggerWindowTimer.MAX_WINDOW_TICKS, timer.getRemainingTicks());
+
+        tick(TriggerWindowTimer.MAX_WINDOW_TICKS);
+        assertTrue(timer.isOpen());
+        tick(1);
+        assertFalse(timer.isOpen());
+    }
+
+    @Test
+    public void wrapsAroundTheWheel() {
+        // Every window lands on wheel slots that were used before
+        for (int round = 0; round < 5; round++) {
+            timer.open(round % 3, 700);
+            tick(700);
+            assertTrue(timer.isOpen());
+            tick(1);
+            assertFalse("Round " + round, timer.isOpen());
+        }
+
+        assertEquals(5 * 701, timer.getCurrentTick());
+    }
+
+    @Test
+    public void expiredWindowDoesNotCloseAReopenedOneOnTheSameSlot() {
+        timer.open(0, 1);
+        tick(2);
+        assertFalse(timer.isOpen());
+
+        // Expires on the slot of tick 1 one wheel turn later
+        tick(TriggerWindowTimer.MAX_WINDOW_TICKS - 1);
+        timer.open(0, 0);
+        assertTrue(timer.isOpen());
+        tick(1);
+        assertFalse(timer.isOpen());
+    }
+
+    @Test
+    public void unknownTriggersAreIgnored() {
+        timer.open(-1, 5);
+        timer.open(3, 5);
+        assertFalse(timer.isOpen());
+    }
+
+    @Test
+    public void resetClosesAllWindows() {
+        timer.open(0, 5);
+        timer.open(1, 5);
+        timer.reset(1);
+
+        assertFalse(timer.isOpen());
+        tick(10);
+        assertFalse(timer.isOpen());
+    }
+
+    private void tick(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            timer.tick();
+        }
+    }
+}